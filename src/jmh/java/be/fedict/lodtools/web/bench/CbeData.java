@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.bench;
+
+import java.util.Random;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.vocabulary.SKOS;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+
+/**
+ * Generates synthetic data shaped like the CBE dataset
+ * 
+ * @author Bart.Hanssens
+ */
+public class CbeData {
+	public final static String CBE = "http://org.belgif.be/cbe/";
+	public final static String NACE = "http://vocab.belgif.be/nace2008/";
+	public final static String ORGTYPE = "http://vocab.belgif.be/orgtype/";
+	
+	private final static String ORG = "http://www.w3.org/ns/org#";
+	private final static String REGORG = "http://www.w3.org/ns/regorg#";
+	
+	private final static String[] WORDS = { "Federale", "Overheidsdienst", "Service",
+		"public", "fédéral", "Beleid", "Ondersteuning", "Stratégie", "Économie", "Ärzte",
+		"\"Quoted\"", "Line\nbreak", "Bakkerij", "Garage", "Consult", "Immo", "BVBA" };
+	
+	private final static ValueFactory F = SimpleValueFactory.getInstance();
+	
+	private final static IRI REGISTERED_ORG = F.createIRI(REGORG, "RegisteredOrganization");
+	private final static IRI ORG_ACTIVITY = F.createIRI(REGORG, "orgActivity");
+	private final static IRI ORG_TYPE = F.createIRI(REGORG, "orgType");
+	private final static IRI LEGAL_NAME = F.createIRI(REGORG, "legalName");
+	private final static IRI SITE = F.createIRI(ORG, "Site");
+	private final static IRI HAS_SITE = F.createIRI(ORG, "hasRegisteredSite");
+	private final static IRI SITE_ADDRESS = F.createIRI(ORG, "siteAddress");
+	private final static IRI REGISTRATION = F.createIRI(REGORG, "registration");
+	private final static IRI IDENTIFIER = F.createIRI("http://www.w3.org/ns/adms#Identifier");
+	private final static IRI NOTATION = SKOS.NOTATION;
+	
+	/**
+	 * Random enterprise number
+	 * 
+	 * @param rnd random generator
+	 * @return enterprise number
+	 */
+	public static String enterpriseNumber(Random rnd) {
+		return String.format("0%03d_%03d_%03d", rnd.nextInt(1000), rnd.nextInt(1000), rnd.nextInt(1000));
+	}
+	
+	/**
+	 * Random name
+	 * 
+	 * @param rnd random generator
+	 * @param words number of words
+	 * @return name
+	 */
+	private static String name(Random rnd, int words) {
+		StringBuilder b = new StringBuilder(WORDS[rnd.nextInt(WORDS.length)]);
+		for (int i = 1; i < words; i++) {
+			b.append(' ').append(WORDS[rnd.nextInt(WORDS.length)]);
+		}
+		return b.toString();
+	}
+	
+	/**
+	 * Generate a model with (about) the requested number of triples
+	 * 
+	 * @param triples number of triples
+	 * @param seed random seed
+	 * @return model
+	 */
+	public static Model generate(int triples, long seed) {
+		Random rnd = new Random(seed);
+		Model m = new LinkedHashModel();
+		m.setNamespace(DCTERMS.PREFIX, DCTERMS.NAMESPACE);
+		m.setNamespace(FOAF.PREFIX, FOAF.NAMESPACE);
+		m.setNamespace(OWL.PREFIX, OWL.NAMESPACE);
+		m.setNamespace(RDF.PREFIX, RDF.NAMESPACE);
+		m.setNamespace(SKOS.PREFIX, SKOS.NAMESPACE);
+		
+		while (m.size() < triples) {
+			String nr = enterpriseNumber(rnd);
+			IRI org = F.createIRI(CBE + "org/" + nr + "#id");
+			IRI site = F.createIRI(CBE + "site/" + nr + "_" + rnd.nextInt(10) + "#id");
+			IRI reg = F.createIRI(CBE + "registration/" + nr + "#id");
+			String label = name(rnd, 3);
+			
+			m.add(org, RDF.TYPE, REGISTERED_ORG);
+			m.add(org, RDFS.LABEL, F.createLiteral(label, "nl"));
+			m.add(org, RDFS.LABEL, F.createLiteral(label, "fr"));
+			m.add(org, LEGAL_NAME, F.createLiteral(label));
+			m.add(org, ORG_TYPE, F.createIRI(ORGTYPE + "CBE" + (300 + rnd.nextInt(100)) + "#id"));
+			m.add(org, ORG_ACTIVITY, F.createIRI(NACE + (10000 + rnd.nextInt(90000)) + "#id"));
+			m.add(org, HAS_SITE, site);
+			m.add(org, REGISTRATION, reg);
+			m.add(org, DCTERMS.MODIFIED, F.createLiteral(
+					String.format("2016-%02d-%02d", 1 + rnd.nextInt(12), 1 + rnd.nextInt(28)), 
+					XMLSchema.DATE));
+			
+			m.add(site, RDF.TYPE, SITE);
+			m.add(site, RDFS.LABEL, F.createLiteral(name(rnd, 2), "nl"));
+			m.add(site, SITE_ADDRESS, F.createLiteral(rnd.nextInt(200) + " " + name(rnd, 2) 
+							+ ", " + (1000 + rnd.nextInt(9000)) + " Brussel"));
+			
+			m.add(reg, RDF.TYPE, IDENTIFIER);
+			m.add(reg, NOTATION, F.createLiteral(nr.replace('_', '.')));
+		}
+		return m;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.bench;
+
+import be.fedict.lodtools.web.helpers.ArrayModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.SKOS;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryResults;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark building a model from query results.
+ * 
+ * Compares the indexed model with namespaces copied into it, as returned for every
+ * query before, with the append-only array model sharing one set of namespaces.
+ * Run with the GC profiler to compare allocation per operation (gc.alloc.rate.norm).
+ * 
+ * @author Bart.Hanssens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelBenchmark {
+	@Param({"10", "1000", "100000", "1000000"})
+	public int size;
+	
+	private final static Set<Namespace> NAMESPACES = Collections.unmodifiableSet(
+		new HashSet<>(Arrays.asList(DCTERMS.NS, FOAF.NS, OWL.NS, RDF.NS, SKOS.NS)));
+	
+	private List<Statement> statements;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		statements = new ArrayList<>(CbeData.generate(size, 42));
+	}
+	
+	@Benchmark
+	public Model asModel() {
+		return QueryResults.asModel(
+			new CloseableIteratorIteration<Statement,QueryEvaluationException>(statements.iterator()));
+	}
+	
+	@Benchmark
+	public Model asModelNamespaces() {
+		Model m = asModel();
+		NAMESPACES.forEach(m::setNamespace);
+		return m;
+	}
+	
+	@Benchmark
+	public Model arrayModel() {
+		Model m = new ArrayModel(NAMESPACES);
+		for (Statement st: statements) {
+			m.add(st);
+		}
+		return m;
+	}
+	
+	@Benchmark
+	public int arrayModelBySubject() {
+		Model m = arrayModel();
+		int n = 0;
+		for (Resource subj: m.subjects()) {
+			n += m.filter(subj, null, null).size();
+		}
+		return n;
+	}
+	
+	@Benchmark
+	public int asModelBySubject() {
+		Model m = asModelNamespaces();
+		int n = 0;
+		for (Resource subj: m.subjects()) {
+			n += m.filter(subj, null, null).size();
+		}
+		return n;
+	}
+}
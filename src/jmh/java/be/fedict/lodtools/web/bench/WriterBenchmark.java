@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.bench;
+
+import be.fedict.lodtools.web.helpers.HTMLMessageBodyWriter;
+import be.fedict.lodtools.web.helpers.RDFMediaType;
+import be.fedict.lodtools.web.helpers.RDFMessageBodyWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.eclipse.rdf4j.model.Model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark RDF and HTML serialization of generated CBE data
+ * 
+ * @author Bart.Hanssens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+	@Param({"10", "1000", "100000", "1000000"})
+	public int size;
+	
+	@Param({RDFMediaType.JSONLD, RDFMediaType.TTL, RDFMediaType.NTRIPLES, RDFMediaType.BINARY})
+	public String format;
+	
+	private final static Annotation[] NONE = new Annotation[0];
+	
+	private final RDFMessageBodyWriter rdf = new RDFMessageBodyWriter();
+	private final HTMLMessageBodyWriter html = new HTMLMessageBodyWriter();
+	private final CountingOutputStream out = new CountingOutputStream();
+	
+	private Model m;
+	private MediaType mt;
+	
+	/**
+	 * Discards output, only counting bytes
+	 */
+	public static class CountingOutputStream extends OutputStream {
+		private long count = 0;
+		
+		@Override
+		public void write(int b) {
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+	}
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		m = CbeData.generate(size, 42);
+		mt = MediaType.valueOf(format);
+	}
+	
+	@Benchmark
+	public long writeRDF() throws IOException {
+		rdf.writeTo(m, Model.class, Model.class, NONE, mt, new MultivaluedHashMap<>(), out);
+		return out.getCount();
+	}
+	
+	@Benchmark
+	public long writeHTML() throws IOException {
+		html.writeTo(m, Model.class, Model.class, NONE, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>(), out);
+		return out.getCount();
+	}
+}
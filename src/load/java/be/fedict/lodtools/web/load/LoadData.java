@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.load;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.text.SimpleDateFormat;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+
+/**
+ * Synthetic CBE, FSB and IWF (procurement) data, and a matching workload
+ * in Dropwizard request log format.
+ * 
+ * @author Bart.Hanssens
+ */
+public class LoadData {
+	private final static String CBE = "http://org.belgif.be/cbe/";
+	private final static String PUBSERV = "http://pubserv.belgif.be/";
+	private final static String PROC = "http://form.belgif.be/proc/";
+	
+	private final static String REGORG = "http://www.w3.org/ns/regorg#";
+	private final static String ORG = "http://www.w3.org/ns/org#";
+	private final static String DCAT = "http://www.w3.org/ns/dcat#";
+	
+	private final static String[] WORDS = { "Federale", "Overheidsdienst", "Service",
+		"public", "fédéral", "Beleid", "Ondersteuning", "Stratégie", "Économie", "Fedict", 
+		"Bakkerij", "Garage", "Consult", "Immo", "KBO", "Enterprise", "Mobility", "Finance" };
+	
+	private final static ValueFactory F = SimpleValueFactory.getInstance();
+	
+	private final int orgs;
+	private final int families;
+	private final int services;
+	private final int contracts;
+	private final long seed;
+	
+	private final List<String> ids = new ArrayList<>();
+	private final List<String> naces = new ArrayList<>();
+	
+	/**
+	 * Random name
+	 * 
+	 * @param rnd random generator
+	 * @param words number of words
+	 * @return name
+	 */
+	private static String name(Random rnd, int words) {
+		StringBuilder b = new StringBuilder(WORDS[rnd.nextInt(WORDS.length)]);
+		for (int i = 1; i < words; i++) {
+			b.append(' ').append(WORDS[rnd.nextInt(WORDS.length)]);
+		}
+		return b.toString();
+	}
+	
+	/**
+	 * Generate CBE data: organisations, registered sites and registrations
+	 * 
+	 * @return model
+	 */
+	public Model cbe() {
+		Random rnd = new Random(seed);
+		Model m = new LinkedHashModel();
+		IRI activity = F.createIRI(REGORG, "orgActivity");
+		IRI hasSite = F.createIRI(ORG, "hasRegisteredSite");
+		IRI registration = F.createIRI(REGORG, "registration");
+		
+		for (int i = 0; i < 100; i++) {
+			naces.add("nace2008/" + (84000 + rnd.nextInt(1000)));
+		}
+		for (int i = 0; i < orgs; i++) {
+			String nr = String.format("0%03d_%03d_%03d", i / 1000000, (i / 1000) % 1000, i % 1000);
+			ids.add(nr);
+			IRI org = F.createIRI(CBE + "org/" + nr + "#id");
+			IRI site = F.createIRI(CBE + "site/" + nr + "#id");
+			IRI reg = F.createIRI(CBE + "registration/" + nr + "#id");
+			String label = name(rnd, 3);
+			
+			m.add(org, RDF.TYPE, F.createIRI(REGORG, "RegisteredOrganization"));
+			m.add(org, RDFS.LABEL, F.createLiteral(label, "nl"));
+			m.add(org, RDFS.LABEL, F.createLiteral(label, "fr"));
+			m.add(org, activity, F.createIRI(CBE + naces.get(rnd.nextInt(naces.size())) + "#id"));
+			m.add(org, hasSite, site);
+			m.add(org, registration, reg);
+			m.add(site, RDF.TYPE, F.createIRI(ORG, "Site"));
+			m.add(site, RDFS.LABEL, F.createLiteral(name(rnd, 2), "nl"));
+			m.add(reg, RDF.TYPE, F.createIRI("http://www.w3.org/ns/adms#Identifier"));
+			m.add(reg, RDFS.LABEL, F.createLiteral(nr.replace('_', '.')));
+		}
+		return m;
+	}
+	
+	/**
+	 * Generate FSB data: catalog, families and services
+	 * 
+	 * @return model
+	 */
+	public Model fsb() {
+		Random rnd = new Random(seed);
+		Model m = new LinkedHashModel();
+		IRI catalog = F.createIRI(PUBSERV + "fedict/fsb/catalog#id");
+		IRI dataset = F.createIRI(DCAT, "Dataset");
+		m.add(catalog, RDF.TYPE, F.createIRI(DCAT, "Catalog"));
+		m.add(catalog, RDFS.LABEL, F.createLiteral("FSB catalog", "en"));
+		
+		for (int i = 0; i < families; i++) {
+			IRI family = F.createIRI(PUBSERV + "fedict/fsb/family/S" + i + "#id");
+			m.add(catalog, dataset, family);
+			m.add(family, RDF.TYPE, dataset);
+			m.add(family, RDFS.LABEL, F.createLiteral(name(rnd, 2), "en"));
+		}
+		for (int i = 0; i < services; i++) {
+			IRI service = F.createIRI(PUBSERV + "fedict/fsb/service/SVC" + i + "#id");
+			m.add(service, RDF.TYPE, F.createIRI("http://purl.org/vocab/cpsv#PublicService"));
+			m.add(service, RDFS.LABEL, F.createLiteral(name(rnd, 3), "en"));
+			m.add(service, dataset, F.createIRI(PUBSERV + "fedict/fsb/family/S" + rnd.nextInt(families) + "#id"));
+		}
+		return m;
+	}
+	
+	/**
+	 * Generate procurement data: framework contracts
+	 * 
+	 * @return model
+	 */
+	public Model iwf() {
+		Random rnd = new Random(seed);
+		Model m = new LinkedHashModel();
+		IRI contract = F.createIRI("http://dbpedia.org/resource/Contract");
+		for (int i = 0; i < contracts; i++) {
+			IRI c = F.createIRI(PROC + "contract/FEDICT-2016-" + i + "#id");
+			m.add(c, RDF.TYPE, contract);
+			m.add(c, RDFS.LABEL, F.createLiteral(name(rnd, 3), "nl"));
+			m.add(c, DCTERMS.DESCRIPTION, F.createLiteral(name(rnd, 8), "nl"));
+		}
+		return m;
+	}
+	
+	/**
+	 * Write a workload to a file, in Dropwizard request log format.
+	 * Lookups (including misses), searches, filters and lists are mixed.
+	 * Must be called after generating the data.
+	 * 
+	 * @param file output file
+	 * @param requests number of requests
+	 * @throws IOException 
+	 */
+	public void writeWorkload(Path file, int requests) throws IOException {
+		Random rnd = new Random(seed);
+		SimpleDateFormat fmt = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+		String now = fmt.format(new Date());
+		
+		try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			for (int i = 0; i < requests; i++) {
+				String path;
+				int r = rnd.nextInt(100);
+				String id = ids.get(rnd.nextInt(ids.size()));
+				if (r < 40) {
+					path = "/cbe/org/" + id;
+				} else if (r < 50) {
+					path = "/cbe/site/" + id;
+				} else if (r < 55) {
+					path = "/cbe/registration/" + id;
+				} else if (r < 62) {
+					path = "/cbe/org/" + String.format("9%09d", rnd.nextInt(1000000000));
+				} else if (r < 70) {
+					path = "/cbe/_search?q=" + WORDS[rnd.nextInt(WORDS.length)].substring(0, 3);
+				} else if (r < 75) {
+					path = "/cbe/_filter?nace=" + naces.get(rnd.nextInt(naces.size()));
+				} else if (r < 82) {
+					path = "/fedict/fsb/service/SVC" + rnd.nextInt(services);
+				} else if (r < 85) {
+					path = "/fedict/fsb/catalog";
+				} else if (r < 88) {
+					path = "/fedict/fsb/_search?q=KBO";
+				} else if (r < 90) {
+					path = "/fedict/fsb/_filter?family=fedict/fsb/family/S" + rnd.nextInt(families);
+				} else if (r < 96) {
+					path = "/proc/contract/FEDICT-2016-" + rnd.nextInt(contracts);
+				} else if (r < 98) {
+					path = "/proc/_search?q=Fed";
+				} else {
+					path = "/proc/contract";
+				}
+				w.printf("127.0.0.1 - - [%s] \"GET %s HTTP/1.1\" 200 0 \"-\" \"loadtest\" 0\n", now, path);
+			}
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param orgs number of CBE organisations
+	 * @param seed random seed
+	 */
+	public LoadData(int orgs, long seed) {
+		this.orgs = orgs;
+		this.families = 50;
+		this.services = 500;
+		this.contracts = 200;
+		this.seed = seed;
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.load;
+
+import be.fedict.lodtools.web.App;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test: starts a stand-in triple store with synthetic data, 
+ * boots the application against it and replays a workload from a request log
+ * at increasing concurrency.
+ * 
+ * Arguments (all optional, key=value):
+ * <ul>
+ * <li>log: request log to replay (default: generated workload)</li>
+ * <li>orgs: number of generated CBE organisations (default 10000)</li>
+ * <li>levels: comma-separated concurrency levels (default 1,4,16,64)</li>
+ * <li>duration: seconds per level (default 20)</li>
+ * <li>warmup: warm-up seconds per level (default 5)</li>
+ * <li>accept: accept header (default application/ld+json)</li>
+ * </ul>
+ * 
+ * @author Bart.Hanssens
+ */
+public class LoadTest {
+	private final static long SEED = 42;
+	
+	private final String base;
+	private final String accept;
+	private final List<String> requests;
+	
+	/**
+	 * Latencies of one endpoint, in microseconds
+	 */
+	private static class Latencies {
+		private long[] values = new long[1024];
+		private int count = 0;
+		private int errors = 0;
+		
+		void add(long micros, boolean ok) {
+			if (count == values.length) {
+				values = Arrays.copyOf(values, count * 2);
+			}
+			values[count++] = micros;
+			if (!ok) {
+				errors++;
+			}
+		}
+		
+		void addAll(Latencies other) {
+			for (int i = 0; i < other.count; i++) {
+				add(other.values[i], true);
+			}
+			errors += other.errors;
+		}
+		
+		long percentile(double p) {
+			return values[Math.max(0, (int) Math.ceil(p * count) - 1)];
+		}
+	}
+	
+	/**
+	 * Get a free TCP port
+	 * 
+	 * @return port number
+	 * @throws IOException 
+	 */
+	private static int freePort() throws IOException {
+		try (ServerSocket s = new ServerSocket(0)) {
+			return s.getLocalPort();
+		}
+	}
+	
+	/**
+	 * Execute a GET request and read the response
+	 * 
+	 * @param path request path
+	 * @param buf read buffer
+	 * @return HTTP status
+	 * @throws IOException 
+	 */
+	private int get(String path, byte[] buf) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL(base + path).openConnection();
+		conn.setRequestProperty("Accept", accept);
+		int status = conn.getResponseCode();
+		try (InputStream in = (status < 400) ? conn.getInputStream() : conn.getErrorStream()) {
+			if (in != null) {
+				while (in.read(buf) >= 0) {
+					// drain
+				}
+			}
+		}
+		return status;
+	}
+	
+	/**
+	 * Replay requests with a number of concurrent clients
+	 * 
+	 * @param clients number of clients
+	 * @param millis duration in milliseconds
+	 * @return latencies per endpoint
+	 * @throws Exception 
+	 */
+	private Map<String,Latencies> run(int clients, long millis) throws Exception {
+		ExecutorService exec = Executors.newFixedThreadPool(clients);
+		long end = System.currentTimeMillis() + millis;
+		
+		List<Future<Map<String,Latencies>>> futures = new ArrayList<>();
+		for (int c = 0; c < clients; c++) {
+			int offset = c * (requests.size() / clients);
+			futures.add(exec.submit(() -> {
+				Map<String,Latencies> lat = new HashMap<>();
+				byte[] buf = new byte[16384];
+				for (int i = offset; System.currentTimeMillis() < end; i++) {
+					String path = requests.get(i % requests.size());
+					long start = System.nanoTime();
+					boolean ok;
+					try {
+						int status = get(path, buf);
+						ok = status < 500;
+					} catch (IOException ioe) {
+						ok = false;
+					}
+					long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+					lat.computeIfAbsent(Workload.endpoint(path), k -> new Latencies()).add(micros, ok);
+				}
+				return lat;
+			}));
+		}
+		
+		Map<String,Latencies> all = new TreeMap<>();
+		for (Future<Map<String,Latencies>> f: futures) {
+			f.get().forEach((k,v) -> all.computeIfAbsent(k, x -> new Latencies()).addAll(v));
+		}
+		exec.shutdown();
+		return all;
+	}
+	
+	/**
+	 * Print latency percentiles and throughput per endpoint
+	 * 
+	 * @param clients number of clients
+	 * @param secs duration in seconds
+	 * @param lat latencies per endpoint
+	 */
+	private static void report(int clients, long secs, Map<String,Latencies> lat) {
+		System.out.printf("\nConcurrency %d\n", clients);
+		System.out.printf("%-40s %9s %9s %9s %9s %9s %7s\n", 
+						"endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "errors");
+		Latencies total = new Latencies();
+		lat.forEach((k,v) -> {
+			total.addAll(v);
+			line(k, secs, v);
+		});
+		line("all", secs, total);
+	}
+	
+	/**
+	 * Print one line of the report
+	 * 
+	 * @param name endpoint
+	 * @param secs duration in seconds
+	 * @param l latencies
+	 */
+	private static void line(String name, long secs, Latencies l) {
+		Arrays.sort(l.values, 0, l.count);
+		System.out.printf("%-40s %9d %9.1f %9.2f %9.2f %9.2f %7d\n", name, l.count, 
+			(double) l.count / secs, l.percentile(0.5) / 1000.0, l.percentile(0.99) / 1000.0, 
+			l.percentile(0.999) / 1000.0, l.errors);
+	}
+	
+	/**
+	 * Write the application configuration
+	 * 
+	 * @param sparql URL of the triple store
+	 * @param port application port
+	 * @param admin admin port
+	 * @return path to the configuration file
+	 * @throws IOException 
+	 */
+	private static Path config(String sparql, int port, int admin) throws IOException {
+		Path cfg = Files.createTempFile("loadtest", ".yml");
+		String yml = "sparqlPoint: \"" + sparql + "\"\n"
+			+ "server:\n"
+			+ "  applicationConnectors:\n"
+			+ "    - type: http\n"
+			+ "      port: " + port + "\n"
+			+ "  adminConnectors:\n"
+			+ "    - type: http\n"
+			+ "      port: " + admin + "\n"
+			+ "  requestLog:\n"
+			+ "    appenders: []\n"
+			+ "logging:\n"
+			+ "  level: WARN\n";
+		Files.write(cfg, yml.getBytes(StandardCharsets.UTF_8));
+		cfg.toFile().deleteOnExit();
+		return cfg;
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param base base URL of the application
+	 * @param accept accept header
+	 * @param requests request paths
+	 */
+	public LoadTest(String base, String accept, List<String> requests) {
+		this.base = base;
+		this.accept = accept;
+		this.requests = requests;
+	}
+	
+	/**
+	 * Main
+	 * 
+	 * @param args key=value arguments
+	 * @throws Exception 
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String,String> opts = new HashMap<>();
+		for (String arg: args) {
+			String[] kv = arg.split("=", 2);
+			opts.put(kv[0], kv.length > 1 ? kv[1] : "");
+		}
+		int orgs = Integer.parseInt(opts.getOrDefault("orgs", "10000"));
+		long duration = Long.parseLong(opts.getOrDefault("duration", "20"));
+		long warmup = Long.parseLong(opts.getOrDefault("warmup", "5"));
+		String accept = opts.getOrDefault("accept", "application/ld+json");
+		
+		System.setProperty("http.maxConnections", "256");
+		
+		// stand-in triple store
+		LoadData data = new LoadData(orgs, SEED);
+		SparqlEndpoint store = new SparqlEndpoint(freePort());
+		store.create("CBE");
+		store.create("FSB");
+		store.create("IWF");
+		store.load("CBE", data.cbe());
+		store.load("FSB", data.fsb());
+		store.load("IWF", data.iwf());
+		store.start();
+		
+		Path log;
+		if (opts.containsKey("log")) {
+			log = Paths.get(opts.get("log"));
+		} else {
+			log = Files.createTempFile("workload", ".log");
+			log.toFile().deleteOnExit();
+			data.writeWorkload(log, 100000);
+		}
+		Workload workload = Workload.read(log);
+		System.out.printf("Replaying %d requests from %s\n", workload.size(), log);
+		
+		// application
+		int port = freePort();
+		new App().run("server", config(store.getURL(), port, freePort()).toString());
+		
+		LoadTest test = new LoadTest("http://localhost:" + port, accept, workload.shuffled(SEED));
+		for (String level: opts.getOrDefault("levels", "1,4,16,64").split(",")) {
+			int clients = Integer.parseInt(level.trim());
+			test.run(clients, TimeUnit.SECONDS.toMillis(warmup));
+			report(clients, duration, test.run(clients, TimeUnit.SECONDS.toMillis(duration)));
+		}
+		
+		store.stop();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import org.eclipse.rdf4j.http.protocol.Protocol;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.BooleanQuery;
+import org.eclipse.rdf4j.query.GraphQuery;
+import org.eclipse.rdf4j.query.Query;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.resultio.QueryResultIO;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+
+/**
+ * Stand-in for a remote triple store, implementing the subset of the RDF4J 
+ * REST protocol used by the application, on top of in-memory repositories.
+ * 
+ * The GraphDB Lucene connector is emulated by rewriting the luc:myIndex
+ * pattern into a regular expression filter on literals.
+ * 
+ * @author Bart.Hanssens
+ */
+public class SparqlEndpoint {
+	private final static String REPO_ID = "http://www.openrdf.org/config/repository#repositoryID";
+	private final static String SYSTEM = "SYSTEM";
+	
+	private final static Pattern FTS = Pattern.compile("(\\?\\w+)\\s+luc:myIndex\\s+\\?(\\w+)\\s*\\.");
+	private final static Pattern PATH = Pattern.compile("^/repositories/([^/]+)(/.*)?$");
+	
+	private final Server server;
+	private final int port;
+	private final Map<String,Repository> repos = new ConcurrentHashMap<>();
+	
+	/**
+	 * Servlet handling the requests
+	 */
+	private class ProtocolServlet extends HttpServlet {
+		@Override
+		protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+			String path = req.getPathInfo() == null ? "" : req.getPathInfo();
+			if (path.equals("/protocol")) {
+				resp.setContentType("text/plain");
+				resp.getWriter().print(Protocol.VERSION);
+				return;
+			}
+			if (path.equals("/repositories")) {
+				listRepositories(resp);
+				return;
+			}
+			Matcher m = PATH.matcher(path);
+			Repository repo = m.matches() ? repos.get(m.group(1)) : null;
+			if (repo == null) {
+				resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			String sub = m.group(2) == null ? "" : m.group(2);
+			try (RepositoryConnection conn = repo.getConnection()) {
+				switch (sub) {
+					case "": 
+					case "/": 
+						query(conn, req, resp);
+						break;
+					case "/statements":
+						statements(conn, req, resp);
+						break;
+					case "/size":
+						resp.setContentType("text/plain");
+						resp.getWriter().print(conn.size());
+						break;
+					case "/namespaces":
+						writeResults(resp, new String[] { "prefix", "namespace" });
+						break;
+					default:
+						resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+				}
+			} catch (RuntimeException e) {
+				resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * List repositories as SPARQL XML results
+	 * 
+	 * @param resp servlet response
+	 * @throws IOException 
+	 */
+	private void listRepositories(HttpServletResponse resp) throws IOException {
+		String[] vars = { "uri", "id", "title", "readable", "writable" };
+		String[][] rows = repos.keySet().stream()
+			.filter(id -> !id.equals(SYSTEM))
+			.map(id -> new String[] { getURL() + "/repositories/" + id, id, id, "true", "true" })
+			.toArray(String[][]::new);
+		writeResults(resp, vars, rows);
+	}
+	
+	/**
+	 * Write simple SPARQL XML results, all values as plain literals
+	 * 
+	 * @param resp servlet response
+	 * @param vars binding names
+	 * @param rows values
+	 * @throws IOException 
+	 */
+	private void writeResults(HttpServletResponse resp, String[] vars, String[]... rows) 
+															throws IOException {
+		resp.setContentType(TupleQueryResultFormat.SPARQL.getDefaultMIMEType());
+		resp.setCharacterEncoding("UTF-8");
+		PrintWriter w = resp.getWriter();
+		w.print("<?xml version='1.0' encoding='UTF-8'?>\n");
+		w.print("<sparql xmlns='http://www.w3.org/2005/sparql-results#'><head>");
+		for (String v: vars) {
+			w.print("<variable name='" + v + "'/>");
+		}
+		w.print("</head><results>");
+		for (String[] row: rows) {
+			w.print("<result>");
+			for (int i = 0; i < vars.length; i++) {
+				w.print("<binding name='" + vars[i] + "'><literal>" + row[i] + "</literal></binding>");
+			}
+			w.print("</result>");
+		}
+		w.print("</results></sparql>");
+	}
+	
+	/**
+	 * Get the RDF format for an accept header
+	 * 
+	 * @param accept accept header value
+	 * @return RDF format
+	 */
+	private static RDFFormat rdfFormat(String accept) {
+		if (accept != null) {
+			for (String mt: accept.split(",")) {
+				Optional<RDFFormat> fmt = Rio.getWriterFormatForMIMEType(mt.split(";")[0].trim());
+				if (fmt.isPresent()) {
+					return fmt.get();
+				}
+			}
+		}
+		return RDFFormat.NTRIPLES;
+	}
+	
+	/**
+	 * Get the tuple results format for an accept header
+	 * 
+	 * @param accept accept header value
+	 * @return tuple results format
+	 */
+	private static TupleQueryResultFormat tupleFormat(String accept) {
+		if (accept != null) {
+			for (String mt: accept.split(",")) {
+				Optional<TupleQueryResultFormat> fmt = 
+					QueryResultIO.getWriterFormatForMIMEType(mt.split(";")[0].trim());
+				if (fmt.isPresent()) {
+					return fmt.get();
+				}
+			}
+		}
+		return TupleQueryResultFormat.SPARQL;
+	}
+	
+	/**
+	 * Evaluate a query or an update
+	 * 
+	 * @param conn repository connection
+	 * @param req servlet request
+	 * @param resp servlet response
+	 * @throws IOException 
+	 */
+	private void query(RepositoryConnection conn, HttpServletRequest req, HttpServletResponse resp) 
+															throws IOException {
+		String upd = req.getParameter(Protocol.UPDATE_PARAM_NAME);
+		if (upd != null) {
+			update(conn, upd);
+			resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+			return;
+		}
+		
+		ValueFactory f = conn.getValueFactory();
+		String qry = req.getParameter(Protocol.QUERY_PARAM_NAME);
+		String regex = null;
+		
+		Matcher m = FTS.matcher(qry);
+		if (m.find()) {
+			regex = m.group(2);
+			qry = m.replaceFirst("FILTER(isLiteral($1) && REGEX(STR($1), ?$2_re, \"i\"))");
+		}
+		Query q = conn.prepareQuery(QueryLanguage.SPARQL, qry);
+		
+		Enumeration<String> names = req.getParameterNames();
+		while (names.hasMoreElements()) {
+			String name = names.nextElement();
+			if (name.startsWith(Protocol.BINDING_PREFIX)) {
+				String var = name.substring(Protocol.BINDING_PREFIX.length());
+				Value val = Protocol.decodeValue(req.getParameter(name), f);
+				q.setBinding(var, val);
+				if (var.equals(regex)) {
+					q.setBinding(var + "_re", f.createLiteral(lucene(val.stringValue())));
+				}
+			}
+		}
+		String timeout = req.getParameter(Protocol.TIMEOUT_PARAM_NAME);
+		if (timeout != null) {
+			q.setMaxExecutionTime(Integer.parseInt(timeout));
+		}
+		
+		String accept = req.getHeader("Accept");
+		OutputStream out = resp.getOutputStream();
+		if (q instanceof GraphQuery) {
+			RDFFormat fmt = rdfFormat(accept);
+			resp.setContentType(fmt.getDefaultMIMEType());
+			((GraphQuery) q).evaluate(Rio.createWriter(fmt, out));
+		} else if (q instanceof TupleQuery) {
+			TupleQueryResultFormat fmt = tupleFormat(accept);
+			resp.setContentType(fmt.getDefaultMIMEType());
+			((TupleQuery) q).evaluate(QueryResultIO.createTupleWriter(fmt, out));
+		} else {
+			resp.setContentType("text/boolean");
+			out.write(String.valueOf(((BooleanQuery) q).evaluate()).getBytes(StandardCharsets.US_ASCII));
+		}
+	}
+
+	/**
+	 * Turn a Lucene prefix query into a regular expression
+	 * 
+	 * @param text lucene query
+	 * @return regular expression 
+	 */
+	private static String lucene(String text) {
+		boolean prefix = text.endsWith("*");
+		String term = prefix ? text.substring(0, text.length() - 1) : text;
+		return "\\b" + Pattern.quote(term) + (prefix ? "" : "\\b");
+	}
+	
+	/**
+	 * Execute an update, updates of the Lucene index are ignored
+	 * 
+	 * @param conn repository connection
+	 * @param upd update string
+	 */
+	private static void update(RepositoryConnection conn, String upd) {
+		if (!upd.contains("luc:updateIndex")) {
+			conn.prepareUpdate(QueryLanguage.SPARQL, upd).execute();
+		}
+	}
+	
+	/**
+	 * Get, add or remove statements
+	 * 
+	 * @param conn repository connection
+	 * @param req servlet request
+	 * @param resp servlet response
+	 * @throws IOException 
+	 */
+	private void statements(RepositoryConnection conn, HttpServletRequest req, HttpServletResponse resp) 
+															throws IOException {
+		ValueFactory f = conn.getValueFactory();
+		Resource subj = Protocol.decodeResource(req.getParameter(Protocol.SUBJECT_PARAM_NAME), f);
+		IRI pred = Protocol.decodeURI(req.getParameter(Protocol.PREDICATE_PARAM_NAME), f);
+		Value obj = Protocol.decodeValue(req.getParameter(Protocol.OBJECT_PARAM_NAME), f);
+		String[] ctxParams = req.getParameterValues(Protocol.CONTEXT_PARAM_NAME);
+		Resource[] ctx = (ctxParams == null) ? new Resource[0] : Protocol.decodeContexts(ctxParams, f);
+		
+		switch (req.getMethod()) {
+			case "GET":
+				RDFFormat fmt = rdfFormat(req.getHeader("Accept"));
+				resp.setContentType(fmt.getDefaultMIMEType());
+				conn.exportStatements(subj, pred, obj, true, Rio.createWriter(fmt, resp.getOutputStream()), ctx);
+				break;
+			case "DELETE":
+				conn.remove(subj, pred, obj, ctx);
+				resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+				break;
+			case "PUT":
+			case "POST":
+				String upd = req.getParameter(Protocol.UPDATE_PARAM_NAME);
+				if (upd != null) {
+					update(conn, upd);
+				} else {
+					if (req.getMethod().equals("PUT")) {
+						conn.clear(ctx);
+					}
+					Optional<RDFFormat> in = Rio.getParserFormatForMIMEType(
+													req.getContentType().split(";")[0].trim());
+					conn.add(req.getInputStream(), "", in.orElse(RDFFormat.NTRIPLES), ctx);
+				}
+				resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+				break;
+			default:
+				resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+		}
+	}
+	
+	/**
+	 * Create an in-memory repository, registered in the SYSTEM repository
+	 * 
+	 * @param id repository ID
+	 * @return repository
+	 */
+	public Repository create(String id) {
+		Repository repo = new SailRepository(new MemoryStore());
+		repo.initialize();
+		repos.put(id, repo);
+		
+		if (!id.equals(SYSTEM)) {
+			try (RepositoryConnection conn = repos.get(SYSTEM).getConnection()) {
+				ValueFactory f = conn.getValueFactory();
+				IRI ctx = f.createIRI("urn:x-config:" + id);
+				conn.add(f.createIRI(ctx + "#repository"), f.createIRI(REPO_ID), f.createLiteral(id), ctx);
+			}
+		}
+		return repo;
+	}
+	
+	/**
+	 * Load data into a repository
+	 * 
+	 * @param id repository ID
+	 * @param m model
+	 */
+	public void load(String id, Model m) {
+		try (RepositoryConnection conn = repos.get(id).getConnection()) {
+			conn.add(m);
+		}
+	}
+	
+	/**
+	 * Get the base URL of the endpoint
+	 * 
+	 * @return URL as string
+	 */
+	public String getURL() {
+		return "http://localhost:" + port;
+	}
+	
+	/**
+	 * Start the endpoint
+	 * 
+	 * @throws Exception 
+	 */
+	public void start() throws Exception {
+		server.start();
+	}
+	
+	/**
+	 * Stop the endpoint
+	 * 
+	 * @throws Exception 
+	 */
+	public void stop() throws Exception {
+		server.stop();
+		repos.values().forEach(Repository::shutDown);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param port TCP port
+	 */
+	public SparqlEndpoint(int port) {
+		this.port = port;
+		this.server = new Server(port);
+		ServletContextHandler ctx = new ServletContextHandler();
+		ctx.addServlet(new ServletHolder(new ProtocolServlet()), "/*");
+		server.setHandler(ctx);
+		create(SYSTEM);
+	}
+}
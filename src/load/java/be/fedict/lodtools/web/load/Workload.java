@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.load;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Workload read from a Dropwizard (NCSA combined) request log
+ * 
+ * @author Bart.Hanssens
+ */
+public class Workload {
+	private final static Pattern LINE = Pattern.compile(
+		"^\\S+ \\S+ \\S+ \\[[^\\]]+\\] \"(\\S+) (\\S+) [^\"]*\" (\\d{3}) .*$");
+	private final static Pattern ID = Pattern.compile("^(/.+/)[^/_][^/]*$");
+	
+	private final List<String> paths = new ArrayList<>();
+	
+	/**
+	 * Endpoint of a request, i.e. the path without identifier and query string
+	 * 
+	 * @param path request path
+	 * @return endpoint
+	 */
+	public static String endpoint(String path) {
+		int q = path.indexOf('?');
+		String p = (q > 0) ? path.substring(0, q) : path;
+		Matcher m = ID.matcher(p);
+		return (m.matches() && p.chars().anyMatch(Character::isDigit)) ? m.group(1) + "{id}" : p;
+	}
+	
+	/**
+	 * Get the requests, in random order
+	 * 
+	 * @param seed random seed
+	 * @return list of paths
+	 */
+	public List<String> shuffled(long seed) {
+		List<String> l = new ArrayList<>(paths);
+		Collections.shuffle(l, new Random(seed));
+		return l;
+	}
+	
+	/**
+	 * Number of requests
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return paths.size();
+	}
+	
+	/**
+	 * Read GET requests from a request log.
+	 * Admin requests (health check, metrics) are skipped.
+	 * 
+	 * @param file log file
+	 * @return workload
+	 * @throws IOException 
+	 */
+	public static Workload read(Path file) throws IOException {
+		Workload w = new Workload();
+		try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+			lines.map(LINE::matcher)
+				.filter(Matcher::matches)
+				.filter(m -> m.group(1).equals("GET"))
+				.map(m -> m.group(2))
+				.filter(p -> !p.startsWith("/healthcheck") && !p.startsWith("/metrics") 
+							&& !p.equals("/") && !p.equals("/favicon.ico"))
+				.forEach(w.paths::add);
+		}
+		return w;
+	}
+}
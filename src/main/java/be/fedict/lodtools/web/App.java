@@ -27,14 +27,43 @@ package be.fedict.lodtools.web;
 
 import be.fedict.lodtools.web.auth.DummyUser;
 import be.fedict.lodtools.web.auth.UpdateAuth;
+import be.fedict.lodtools.web.bloom.SubjectFilterManager;
+import be.fedict.lodtools.web.cache.CacheHeaderFilter;
+import be.fedict.lodtools.web.cache.Purger;
+import be.fedict.lodtools.web.changes.ChangeLog;
+import be.fedict.lodtools.web.dump.DumpManager;
+import be.fedict.lodtools.web.dump.DumpServlet;
 import be.fedict.lodtools.web.health.RdfStoreHealthCheck;
+import be.fedict.lodtools.web.health.RepositoryHealthCheck;
+import be.fedict.lodtools.web.health.WarmupHealthCheck;
+import be.fedict.lodtools.web.helpers.HTMLMessageBodyWriter;
 import be.fedict.lodtools.web.helpers.RDFMessageBodyReader;
 import be.fedict.lodtools.web.helpers.RDFMessageBodyWriter;
+import be.fedict.lodtools.web.journal.Journal;
+import be.fedict.lodtools.web.monitoring.GcPauseMetrics;
+import be.fedict.lodtools.web.monitoring.QueryMonitor;
+import be.fedict.lodtools.web.monitoring.ResourceCostFeature;
+import be.fedict.lodtools.web.monitoring.ServerTimingFilter;
+import be.fedict.lodtools.web.monitoring.SlowQueryLog;
 import be.fedict.lodtools.web.resources.CpsvResource;
 import be.fedict.lodtools.web.resources.FsbResource;
+import be.fedict.lodtools.web.resources.OpsResource;
 import be.fedict.lodtools.web.resources.OrgResource;
 import be.fedict.lodtools.web.resources.ProcResource;
 import be.fedict.lodtools.web.resources.RdfResource;
+import be.fedict.lodtools.web.resources.SearchResource;
+import be.fedict.lodtools.web.sitemap.SitemapManager;
+import be.fedict.lodtools.web.stats.StatsManager;
+import be.fedict.lodtools.web.store.RepositoryBinder;
+import be.fedict.lodtools.web.tasks.DumpTask;
+import be.fedict.lodtools.web.tasks.SitemapTask;
+import be.fedict.lodtools.web.tasks.SlowQueryTask;
+import be.fedict.lodtools.web.tasks.StatsTask;
+import be.fedict.lodtools.web.throttle.ThrottleFilter;
+import be.fedict.lodtools.web.warmup.HotKeyFilter;
+import be.fedict.lodtools.web.warmup.Warmup;
+
+import com.codahale.metrics.Gauge;
 
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthDynamicFeature;
@@ -42,13 +71,17 @@ import io.dropwizard.auth.basic.BasicCredentialAuthFilter;
 import io.dropwizard.setup.Environment;
 
 import java.lang.reflect.Constructor;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+import javax.servlet.DispatcherType;
 import javax.ws.rs.WebApplicationException;
 
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.manager.RemoteRepositoryManager;
-import org.eclipse.rdf4j.repository.manager.RepositoryProvider;
 
 /**
  * Main Dropwizard web application
@@ -68,9 +101,9 @@ public class App extends Application<AppConfig> {
 	 * @param repo repository
 	 * @return resource class
 	 */
-	private Object getResource(Class<RdfResource> cl, Repository repo) {
+	private RdfResource getResource(Class<RdfResource> cl, Repository repo) {
 		try {
-			Constructor c = cl.getConstructor(Repository.class);
+			Constructor<RdfResource> c = cl.getConstructor(Repository.class);
 			return c.newInstance(repo);
 		} catch (ReflectiveOperationException ex) {
 			throw new WebApplicationException(ex);
@@ -83,21 +116,121 @@ public class App extends Application<AppConfig> {
 		// RDF Serialization formats
 		env.jersey().register(new RDFMessageBodyWriter());
 		env.jersey().register(new RDFMessageBodyReader());
-		//env.jersey().register(new HTMLMessageBodyWriter());
+		env.jersey().register(new HTMLMessageBodyWriter());
 		
 		// Managed resource
 		String endpoint = config.getSparqlPoint();
-		RemoteRepositoryManager mgr = 
-				(RemoteRepositoryManager) RepositoryProvider.getRepositoryManager(endpoint);
+		RemoteRepositoryManager mgr = new RemoteRepositoryManager(endpoint);
 		if (config.getUsername() != null) {
 			mgr.setUsernameAndPassword(config.getUsername(), config.getPassword());
 		}
-		mgr.initialize();
+		// connect in the background, so startup does not depend on the store
+		RepositoryBinder binder = new RepositoryBinder(mgr);
+		env.lifecycle().manage(binder);
 		
 		// Monitoring
-		RdfStoreHealthCheck check = new RdfStoreHealthCheck(mgr.getSystemRepository());
+		RdfStoreHealthCheck check = 
+				new RdfStoreHealthCheck(binder.getRepository(RepositoryBinder.SYSTEM));
 		env.healthChecks().register("triplestore", check);
+		env.healthChecks().register("repositories", new RepositoryHealthCheck(binder));
+		
+		if (config.getServerTiming()) {
+			env.servlets().addFilter("server-timing", new ServerTimingFilter())
+				.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+		}
+		// Allocation and CPU time per resource method, and GC pauses
+		if (config.getAllocationMetrics()) {
+			env.jersey().register(new ResourceCostFeature(env.metrics()));
+			env.lifecycle().manage(new GcPauseMetrics(env.metrics()));
+		}
+		// Per-client rate limits, the admin port (health checks) is not limited
+		if (config.getThrottle() != null) {
+			env.servlets().addFilter("throttle", 
+								new ThrottleFilter(config.getThrottle(), env.metrics()))
+				.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+		}
+		SlowQueryLog slowLog = new SlowQueryLog(config.getSlowQueryThreshold(), 
+												config.getSlowQueryBuffer());
+		env.admin().addTask(new SlowQueryTask(slowLog));
+		QueryMonitor monitor = null;
+		if (config.getQueryTimeout() != null) {
+			monitor = new QueryMonitor(config.getQueryTimeout(), env.metrics());
+			env.lifecycle().manage(monitor);
+		}
 
+		// Warm-up, using the most requested paths of the previous run
+		if (config.getWarmup() != null) {
+			HotKeyFilter hotKeys = new HotKeyFilter(config.getWarmup().getSize() * 16);
+			env.servlets().addFilter("hot-keys", hotKeys)
+				.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+			Warmup warmup = new Warmup(config.getWarmup(), hotKeys);
+			env.lifecycle().manage(warmup);
+			env.lifecycle().addServerLifecycleListener(warmup);
+			env.healthChecks().register("warmup", new WarmupHealthCheck(warmup));
+		}
+		
+		// Dumps
+		DumpManager dumps = null;
+		if (config.getDump() != null) {
+			dumps = new DumpManager(config.getDump());
+			env.lifecycle().manage(dumps);
+			env.servlets().addServlet("dump", new DumpServlet(dumps.getDir()))
+							.addMapping("/_dump/*");
+			env.admin().addTask(new DumpTask(dumps));
+		}
+		
+		// Dataset statistics
+		StatsManager stats = null;
+		if (config.getStats() != null) {
+			stats = new StatsManager(config.getStats());
+			env.lifecycle().manage(stats);
+			env.admin().addTask(new StatsTask(stats));
+		}
+		
+		// Filters of known subjects
+		SubjectFilterManager filters = null;
+		if (config.getSubjectFilter() != null) {
+			filters = new SubjectFilterManager(config.getSubjectFilter(), env.metrics());
+			env.lifecycle().manage(filters);
+		}
+		
+		// Sitemaps for crawlers
+		SitemapManager sitemaps = null;
+		if (config.getSitemap() != null) {
+			sitemaps = new SitemapManager(config.getSitemap());
+			env.lifecycle().manage(sitemaps);
+			env.admin().addTask(new SitemapTask(sitemaps));
+		}
+		
+		// Caching by the proxy, purged after updates
+		Purger purger = null;
+		if (config.getCache() != null) {
+			env.jersey().register(new CacheHeaderFilter(config.getCache()));
+			if (config.getCache().getPurge() != null) {
+				purger = new Purger(config.getCache(), env.metrics());
+				env.lifecycle().manage(purger);
+			}
+		}
+		
+		// Search across all repositories
+		SearchResource search = null;
+		if (config.getSearch() != null) {
+			int threads = config.getSearch().getThreads();
+			ExecutorService exec = env.lifecycle().executorService("search-%d")
+											.minThreads(threads).maxThreads(threads)
+											.workQueue(new ArrayBlockingQueue<>(threads * 4))
+											.build();
+			search = new SearchResource(config.getSearch(), exec, env.metrics());
+		}
+		
+		// Write-behind journal for updates
+		Journal journal = null;
+		if (config.getJournal() != null) {
+			journal = new Journal(config.getJournal());
+			env.jersey().register(new OpsResource(journal));
+			env.metrics().register("journal.backlog", (Gauge<Long>) journal::getBacklog);
+		}
+		
 		// Authentication
 		env.jersey().register(new AuthDynamicFeature(
 				new BasicCredentialAuthFilter.Builder<DummyUser>()
@@ -114,11 +247,52 @@ public class App extends Application<AppConfig> {
 		}};
 		
 		for(String name: map.keySet()) {
-			Repository repo = mgr.getRepository(name);
-			if (repo != null) {
-				Object resource = getResource(map.get(name), repo);
-				env.jersey().register(resource);
+			Repository repo = binder.getRepository(name);
+			RdfResource resource = getResource(map.get(name), repo);
+			resource.setSlowQueryLog(slowLog);
+			resource.setQueryMonitor(monitor);
+			resource.setBatchSize(config.getBatchSize());
+			resource.setDescribeDepth(config.getDescribeDepth());
+			if (dumps != null) {
+				dumps.addRepository(name, repo);
+				resource.addStoreListener(dumps.getListener(name));
+			}
+			if (config.getResponseBudget() != null) {
+				// point to the dump when results are truncated
+				resource.setResponseBudgets(config.getResponseBudget(), (dumps != null) 
+					? "_dump/" + name.toLowerCase() + DumpManager.NT : null);
+			}
+			if (stats != null) {
+				resource.setStats(stats.addRepository(name, repo));
 			}
+			if (filters != null) {
+				resource.setSubjectFilter(filters.addRepository(name, repo));
+			}
+			if (sitemaps != null && resource.getBase() != null) {
+				resource.setSitemap(sitemaps.addRepository(name, repo, resource.getBase()));
+			}
+			if (config.getChanges() != null) {
+				ChangeLog changes = new ChangeLog(config.getChanges(), name);
+				env.lifecycle().manage(changes);
+				resource.setChangeLog(changes);
+			}
+			if (journal != null) {
+				resource.setJournal(journal, name);
+			}
+			if (search != null) {
+				search.addResource(name, resource);
+			}
+			if (purger != null) {
+				resource.addStoreListener(purger);
+			}
+			env.jersey().register(resource);
+		}
+		if (search != null) {
+			env.jersey().register(search);
+		}
+		// replayed updates are passed to the listeners, so start the journal last
+		if (journal != null) {
+			env.lifecycle().manage(journal);
 		}
 	}
 	
@@ -25,10 +25,26 @@
  */
 package be.fedict.lodtools.web;
 
+import be.fedict.lodtools.web.bloom.SubjectFilterConfig;
+import be.fedict.lodtools.web.cache.CacheConfig;
+import be.fedict.lodtools.web.changes.ChangesConfig;
+import be.fedict.lodtools.web.dump.DumpConfig;
+import be.fedict.lodtools.web.journal.JournalConfig;
+import be.fedict.lodtools.web.monitoring.QueryTimeoutConfig;
+import be.fedict.lodtools.web.monitoring.ResponseBudgetConfig;
+import be.fedict.lodtools.web.search.SearchConfig;
+import be.fedict.lodtools.web.sitemap.SitemapConfig;
+import be.fedict.lodtools.web.stats.StatsConfig;
+import be.fedict.lodtools.web.throttle.ThrottleConfig;
+import be.fedict.lodtools.web.warmup.WarmupConfig;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import io.dropwizard.Configuration;
 
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
 import org.hibernate.validator.constraints.URL;
 
 /**
@@ -42,6 +58,44 @@ public class AppConfig extends Configuration {
 	private String username;
 	private String password;
 	
+	private boolean serverTiming = false;
+	private boolean allocationMetrics = false;
+	
+	@Min(0)
+	private long slowQueryThreshold = 1000;
+	@Min(1)
+	private int slowQueryBuffer = 100;
+	
+	@Min(1)
+	private int batchSize = 100;
+	@Min(0)
+	private int describeDepth = 1;
+	
+	@Valid
+	private QueryTimeoutConfig queryTimeout;
+	@Valid
+	private ResponseBudgetConfig responseBudget;
+	
+	@Valid
+	private DumpConfig dump;
+	@Valid
+	private WarmupConfig warmup;
+	@Valid
+	private JournalConfig journal;
+	@Valid
+	private ChangesConfig changes;
+	@Valid
+	private ThrottleConfig throttle;
+	@Valid
+	private StatsConfig stats;
+	@Valid
+	private SubjectFilterConfig subjectFilter;
+	@Valid
+	private SitemapConfig sitemap;
+	@Valid
+	private SearchConfig search;
+	@Valid
+	private CacheConfig cache;
 
 	@JsonProperty
 	public String getSparqlPoint() {
@@ -72,4 +126,184 @@ public class AppConfig extends Configuration {
 	public void setPassword(String password) {
 		this.password = password;
 	}
+
+	@JsonProperty
+	public boolean getServerTiming() {
+		return serverTiming;
+	}
+
+	@JsonProperty
+	public void setServerTiming(boolean serverTiming) {
+		this.serverTiming = serverTiming;
+	}
+
+	@JsonProperty
+	public boolean getAllocationMetrics() {
+		return allocationMetrics;
+	}
+
+	@JsonProperty
+	public void setAllocationMetrics(boolean allocationMetrics) {
+		this.allocationMetrics = allocationMetrics;
+	}
+
+	@JsonProperty
+	public long getSlowQueryThreshold() {
+		return slowQueryThreshold;
+	}
+
+	@JsonProperty
+	public void setSlowQueryThreshold(long slowQueryThreshold) {
+		this.slowQueryThreshold = slowQueryThreshold;
+	}
+
+	@JsonProperty
+	public int getSlowQueryBuffer() {
+		return slowQueryBuffer;
+	}
+
+	@JsonProperty
+	public void setSlowQueryBuffer(int slowQueryBuffer) {
+		this.slowQueryBuffer = slowQueryBuffer;
+	}
+
+	@JsonProperty
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	@JsonProperty
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@JsonProperty
+	public int getDescribeDepth() {
+		return describeDepth;
+	}
+
+	@JsonProperty
+	public void setDescribeDepth(int describeDepth) {
+		this.describeDepth = describeDepth;
+	}
+
+	@JsonProperty
+	public QueryTimeoutConfig getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	@JsonProperty
+	public void setQueryTimeout(QueryTimeoutConfig queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	@JsonProperty
+	public ResponseBudgetConfig getResponseBudget() {
+		return responseBudget;
+	}
+
+	@JsonProperty
+	public void setResponseBudget(ResponseBudgetConfig responseBudget) {
+		this.responseBudget = responseBudget;
+	}
+
+	@JsonProperty
+	public DumpConfig getDump() {
+		return dump;
+	}
+
+	@JsonProperty
+	public void setDump(DumpConfig dump) {
+		this.dump = dump;
+	}
+
+	@JsonProperty
+	public WarmupConfig getWarmup() {
+		return warmup;
+	}
+
+	@JsonProperty
+	public void setWarmup(WarmupConfig warmup) {
+		this.warmup = warmup;
+	}
+
+	@JsonProperty
+	public JournalConfig getJournal() {
+		return journal;
+	}
+
+	@JsonProperty
+	public void setJournal(JournalConfig journal) {
+		this.journal = journal;
+	}
+
+	@JsonProperty
+	public ChangesConfig getChanges() {
+		return changes;
+	}
+
+	@JsonProperty
+	public void setChanges(ChangesConfig changes) {
+		this.changes = changes;
+	}
+
+	@JsonProperty
+	public ThrottleConfig getThrottle() {
+		return throttle;
+	}
+
+	@JsonProperty
+	public void setThrottle(ThrottleConfig throttle) {
+		this.throttle = throttle;
+	}
+
+	@JsonProperty
+	public StatsConfig getStats() {
+		return stats;
+	}
+
+	@JsonProperty
+	public void setStats(StatsConfig stats) {
+		this.stats = stats;
+	}
+
+	@JsonProperty
+	public SubjectFilterConfig getSubjectFilter() {
+		return subjectFilter;
+	}
+
+	@JsonProperty
+	public void setSubjectFilter(SubjectFilterConfig subjectFilter) {
+		this.subjectFilter = subjectFilter;
+	}
+
+	@JsonProperty
+	public SitemapConfig getSitemap() {
+		return sitemap;
+	}
+
+	@JsonProperty
+	public void setSitemap(SitemapConfig sitemap) {
+		this.sitemap = sitemap;
+	}
+
+	@JsonProperty
+	public SearchConfig getSearch() {
+		return search;
+	}
+
+	@JsonProperty
+	public void setSearch(SearchConfig search) {
+		this.search = search;
+	}
+
+	@JsonProperty
+	public CacheConfig getCache() {
+		return cache;
+	}
+
+	@JsonProperty
+	public void setCache(CacheConfig cache) {
+		this.cache = cache;
+	}
 }
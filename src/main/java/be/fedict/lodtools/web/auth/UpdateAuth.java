@@ -25,6 +25,8 @@
  */
 package be.fedict.lodtools.web.auth;
 
+import be.fedict.lodtools.web.monitoring.ServerTiming;
+
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
 import io.dropwizard.auth.basic.BasicCredentials;
@@ -42,10 +44,15 @@ public class UpdateAuth implements Authenticator<BasicCredentials, DummyUser> {
 			
 	@Override
 	public Optional<DummyUser> authenticate(BasicCredentials c) throws AuthenticationException {
-		if (c.getUsername().equals(username) && c.getPassword().equals(password)) {
-			return Optional.of(new DummyUser());
-		} 
-		return Optional.empty();
+		long start = System.nanoTime();
+		try {
+			if (c.getUsername().equals(username) && c.getPassword().equals(password)) {
+				return Optional.of(new DummyUser());
+			} 
+			return Optional.empty();
+		} finally {
+			ServerTiming.record(ServerTiming.Phase.AUTH, start);
+		}
 	}
 	
 	/**
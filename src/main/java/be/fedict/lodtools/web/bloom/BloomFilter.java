@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.bloom;
+
+import be.fedict.lodtools.web.helpers.Hashing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free Bloom filter of strings.
+ * 
+ * The bit positions are derived from a single 64-bit hash (double hashing).
+ * 
+ * @author Bart.Hanssens
+ */
+public class BloomFilter {
+	private final AtomicLongArray words;
+	private final long bits;
+	private final int hashes;
+	private final LongAdder set = new LongAdder();
+	
+	/**
+	 * Set a bit
+	 * 
+	 * @param idx bit index
+	 */
+	private void setBit(long idx) {
+		int word = (int) (idx >>> 6);
+		long mask = 1L << idx;
+		while (true) {
+			long old = words.get(word);
+			if ((old & mask) != 0) {
+				return;
+			}
+			if (words.compareAndSet(word, old, old | mask)) {
+				set.increment();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Add a string
+	 * 
+	 * @param s string
+	 */
+	public void put(String s) {
+		long h1 = Hashing.hash64(s);
+		long h2 = Long.rotateLeft(h1, 32) | 1;
+		for (int i = 0; i < hashes; i++) {
+			setBit(Math.floorMod(h1 + i * h2, bits));
+		}
+	}
+	
+	/**
+	 * Check if a string may have been added
+	 * 
+	 * @param s string
+	 * @return false if the string was definitely not added
+	 */
+	public boolean mightContain(String s) {
+		long h1 = Hashing.hash64(s);
+		long h2 = Long.rotateLeft(h1, 32) | 1;
+		for (int i = 0; i < hashes; i++) {
+			long idx = Math.floorMod(h1 + i * h2, bits);
+			if ((words.get((int) (idx >>> 6)) & (1L << idx)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Estimate the probability of a false positive, based on the bits set
+	 * 
+	 * @return probability
+	 */
+	public double getFalsePositiveRate() {
+		return Math.pow((double) set.sum() / bits, hashes);
+	}
+	
+	/**
+	 * Estimate the number of distinct strings added, based on the bits set
+	 * 
+	 * @return number of strings
+	 */
+	public long getApproximateCount() {
+		double fill = (double) set.sum() / bits;
+		if (fill >= 1) {
+			return Long.MAX_VALUE;
+		}
+		return Math.round(-bits / (double) hashes * Math.log(1 - fill));
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param expected expected number of strings
+	 * @param fpp target false positive probability
+	 */
+	public BloomFilter(long expected, double fpp) {
+		long n = Math.max(1, expected);
+		long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		// round up to a full word, Integer.MAX_VALUE words at most
+		m = Math.min((m + 63) & ~63L, (long) Integer.MAX_VALUE << 6);
+		this.bits = Math.max(64, m);
+		this.hashes = (int) Math.max(1, Math.round((double) bits / n * Math.log(2)));
+		this.words = new AtomicLongArray((int) (bits >>> 6));
+	}
+}
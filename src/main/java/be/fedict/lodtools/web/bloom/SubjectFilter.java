@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.bloom;
+
+import be.fedict.lodtools.web.resources.StoreListener;
+
+import com.codahale.metrics.Meter;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+/**
+ * Bloom filter of the subjects in a repository, to answer lookups of 
+ * subjects that definitely do not exist without querying the store.
+ * 
+ * New subjects are added when statements are written. Deleted subjects are
+ * only removed when the filter is rebuilt.
+ * 
+ * @author Bart.Hanssens
+ */
+public class SubjectFilter implements StoreListener {
+	private final long expected;
+	private final double fpp;
+	private final Meter misses;
+	private final Meter falsePositives;
+	
+	private volatile BloomFilter current;
+	private volatile BloomFilter building;
+	
+	/**
+	 * Check if a subject may exist.
+	 * Always true as long as the filter is not built.
+	 * 
+	 * @param subj subject IRI
+	 * @return false if the subject definitely does not exist
+	 */
+	public boolean mightContain(String subj) {
+		BloomFilter f = current;
+		if (f == null || f.mightContain(subj)) {
+			return true;
+		}
+		misses.mark();
+		return false;
+	}
+	
+	/**
+	 * Record a lookup that passed the filter but returned nothing
+	 */
+	public void falsePositive() {
+		falsePositives.mark();
+	}
+	
+	/**
+	 * Get the estimated false positive probability
+	 * 
+	 * @return probability, 1 when not built
+	 */
+	public double getFalsePositiveRate() {
+		BloomFilter f = current;
+		return (f != null) ? f.getFalsePositiveRate() : 1;
+	}
+	
+	/**
+	 * Check if the filter holds more subjects than it was sized for
+	 * 
+	 * @return true if it should be rebuilt with a larger size
+	 */
+	public boolean isOverfull() {
+		BloomFilter f = current;
+		return f != null && f.getFalsePositiveRate() > fpp * 2;
+	}
+	
+	@Override
+	public void added(Model m) {
+		BloomFilter f = current;
+		BloomFilter b = building;
+		for (Resource subj: m.subjects()) {
+			if (f != null) {
+				f.put(subj.stringValue());
+			}
+			if (b != null) {
+				b.put(subj.stringValue());
+			}
+		}
+	}
+
+	@Override
+	public void deleted(IRI subj, Model m) {
+		// not possible in a Bloom filter, removed on the next rebuild
+	}
+	
+	/**
+	 * Get a handler building a new filter from all statements.
+	 * The new filter replaces the current one when all statements are handled.
+	 * Subjects written during the scan are added to both filters.
+	 * 
+	 * @return RDF handler
+	 */
+	public RDFHandler rebuild() {
+		BloomFilter f = current;
+		long count = (f != null) ? Math.min(f.getApproximateCount(), Integer.MAX_VALUE) : 0;
+		long n = Math.max(expected, 2 * count);
+		BloomFilter next = new BloomFilter(n, fpp);
+		building = next;
+		
+		return new AbstractRDFHandler() {
+			@Override
+			public void handleStatement(Statement st) {
+				next.put(st.getSubject().stringValue());
+			}
+			
+			@Override
+			public void endRDF() {
+				current = next;
+				building = null;
+			}
+		};
+	}
+	
+	/**
+	 * Stop updating the filter being built, after a failed rebuild
+	 */
+	public void abort() {
+		building = null;
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param expected minimum expected number of subjects
+	 * @param fpp target false positive probability
+	 * @param misses meter for lookups rejected by the filter
+	 * @param falsePositives meter for lookups passing the filter without result
+	 */
+	public SubjectFilter(long expected, double fpp, Meter misses, Meter falsePositives) {
+		this.expected = expected;
+		this.fpp = fpp;
+		this.misses = misses;
+		this.falsePositives = falsePositives;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.bloom;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration of the Bloom filters of subjects
+ * 
+ * @author Bart.Hanssens
+ */
+public class SubjectFilterConfig {
+	@Min(1)
+	private long interval = 24 * 60;
+	@Min(1)
+	private long expected = 1000000;
+	@DecimalMin("0.000001") @DecimalMax("0.5")
+	private double fpp = 0.01;
+
+	/**
+	 * Get interval between rebuilds, removing deleted subjects
+	 * 
+	 * @return interval in minutes
+	 */
+	@JsonProperty
+	public long getInterval() {
+		return interval;
+	}
+
+	@JsonProperty
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Get minimum expected number of subjects per repository
+	 * 
+	 * @return number of subjects
+	 */
+	@JsonProperty
+	public long getExpected() {
+		return expected;
+	}
+
+	@JsonProperty
+	public void setExpected(long expected) {
+		this.expected = expected;
+	}
+
+	/**
+	 * Get target probability of a false positive
+	 * 
+	 * @return probability
+	 */
+	@JsonProperty
+	public double getFpp() {
+		return fpp;
+	}
+
+	@JsonProperty
+	public void setFpp(double fpp) {
+		this.fpp = fpp;
+	}
+}
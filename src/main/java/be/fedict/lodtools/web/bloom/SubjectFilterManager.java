@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.bloom;
+
+import be.fedict.lodtools.web.store.RepositoryUnavailableException;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the subject filter of each repository at startup, and rebuilds it
+ * periodically to remove deleted subjects, with a single pass over all statements.
+ * 
+ * @author Bart.Hanssens
+ */
+public class SubjectFilterManager implements Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(SubjectFilterManager.class);
+	
+	private final long interval;
+	private final long expected;
+	private final double fpp;
+	private final MetricRegistry metrics;
+	private final Map<String,Repository> repos = new ConcurrentHashMap<>();
+	private final Map<String,SubjectFilter> filters = new ConcurrentHashMap<>();
+	private ScheduledExecutorService exec;
+	
+	/**
+	 * Add repository
+	 * 
+	 * @param name repository name
+	 * @param repo repository
+	 * @return subject filter of the repository
+	 */
+	public SubjectFilter addRepository(String name, Repository repo) {
+		String key = name.toLowerCase();
+		repos.put(key, repo);
+		return filters.computeIfAbsent(key, k -> {
+			SubjectFilter f = new SubjectFilter(expected, fpp,
+				metrics.meter(MetricRegistry.name(SubjectFilter.class, k, "misses")),
+				metrics.meter(MetricRegistry.name(SubjectFilter.class, k, "false-positives")));
+			metrics.register(MetricRegistry.name(SubjectFilter.class, k, "fpp"), 
+								(Gauge<Double>) f::getFalsePositiveRate);
+			return f;
+		});
+	}
+	
+	/**
+	 * Rebuild the filter of a repository
+	 * 
+	 * @param name repository name
+	 * @throws RepositoryException
+	 */
+	public synchronized void rebuild(String name) throws RepositoryException {
+		Repository repo = repos.get(name);
+		if (repo == null) {
+			throw new RepositoryException("Unknown repository " + name);
+		}
+		SubjectFilter filter = filters.get(name);
+		long start = System.currentTimeMillis();
+		try (RepositoryConnection conn = repo.getConnection()) {
+			conn.export(filter.rebuild());
+		} finally {
+			filter.abort();
+			LOG.info("Subject filter of {} built in {} ms", name, System.currentTimeMillis() - start);
+		}
+	}
+	
+	/**
+	 * Rebuild filter, logging errors instead of throwing them
+	 * 
+	 * @param name repository name
+	 */
+	private void rebuildQuietly(String name) {
+		try {
+			rebuild(name);
+			if (filters.get(name).isOverfull()) {
+				LOG.info("Subject filter of {} too small, resizing", name);
+				exec.execute(() -> rebuildQuietly(name));
+			}
+		} catch (RepositoryUnavailableException e) {
+			LOG.info("Repository {} not available yet, subject filter postponed", name);
+			exec.schedule(() -> rebuildQuietly(name), 1, TimeUnit.MINUTES);
+		} catch (RepositoryException|RDFHandlerException e) {
+			LOG.error("Subject filter of {} failed", name, e);
+		}
+	}
+	
+	@Override
+	public void start() throws Exception {
+		exec = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "subject-filter");
+			t.setDaemon(true);
+			return t;
+		});
+		for (String name: repos.keySet()) {
+			exec.scheduleWithFixedDelay(() -> rebuildQuietly(name), 0, interval, TimeUnit.MINUTES);
+		}
+	}
+
+	@Override
+	public void stop() throws Exception {
+		exec.shutdownNow();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg subject filter configuration
+	 * @param metrics metric registry
+	 */
+	public SubjectFilterManager(SubjectFilterConfig cfg, MetricRegistry metrics) {
+		this.interval = cfg.getInterval();
+		this.expected = cfg.getExpected();
+		this.fpp = cfg.getFpp();
+		this.metrics = metrics;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.cache;
+
+import be.fedict.lodtools.web.resources.EndpointClass;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+import org.hibernate.validator.constraints.URL;
+
+/**
+ * Caching headers per class of endpoints, and purging of the proxy cache after updates
+ * 
+ * @author Bart.Hanssens
+ */
+public class CacheConfig {
+	@Valid @NotNull
+	private CachePolicyConfig lookup = new CachePolicyConfig(300, 86400);
+	@Valid @NotNull
+	private CachePolicyConfig search = new CachePolicyConfig(60, 300);
+	@Valid @NotNull
+	private CachePolicyConfig filter = new CachePolicyConfig(60, 3600);
+	@Valid @NotNull
+	private CachePolicyConfig bulk = new CachePolicyConfig(0, 3600);
+	
+	@Min(1)
+	private int maxKeys = 100;
+	
+	@URL
+	private String purge;
+	@Pattern(regexp = "GET|POST|PUT|DELETE")
+	private String purgeMethod = "POST";
+
+	@JsonProperty
+	public CachePolicyConfig getLookup() {
+		return lookup;
+	}
+
+	@JsonProperty
+	public void setLookup(CachePolicyConfig lookup) {
+		this.lookup = lookup;
+	}
+
+	@JsonProperty
+	public CachePolicyConfig getSearch() {
+		return search;
+	}
+
+	@JsonProperty
+	public void setSearch(CachePolicyConfig search) {
+		this.search = search;
+	}
+
+	@JsonProperty
+	public CachePolicyConfig getFilter() {
+		return filter;
+	}
+
+	@JsonProperty
+	public void setFilter(CachePolicyConfig filter) {
+		this.filter = filter;
+	}
+
+	@JsonProperty
+	public CachePolicyConfig getBulk() {
+		return bulk;
+	}
+
+	@JsonProperty
+	public void setBulk(CachePolicyConfig bulk) {
+		this.bulk = bulk;
+	}
+
+	/**
+	 * Get maximum number of surrogate keys per response, 
+	 * larger responses get one key for all data instead
+	 * 
+	 * @return number of keys
+	 */
+	@JsonProperty
+	public int getMaxKeys() {
+		return maxKeys;
+	}
+
+	@JsonProperty
+	public void setMaxKeys(int maxKeys) {
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * Get URL of the purge endpoint of the proxy
+	 * 
+	 * @return URL or null
+	 */
+	@JsonProperty
+	public String getPurge() {
+		return purge;
+	}
+
+	@JsonProperty
+	public void setPurge(String purge) {
+		this.purge = purge;
+	}
+
+	@JsonProperty
+	public String getPurgeMethod() {
+		return purgeMethod;
+	}
+
+	@JsonProperty
+	public void setPurgeMethod(String purgeMethod) {
+		this.purgeMethod = purgeMethod;
+	}
+	
+	/**
+	 * Get the caching policy for a class of endpoints
+	 * 
+	 * @param cl endpoint class
+	 * @return policy
+	 */
+	public CachePolicyConfig getPolicy(EndpointClass cl) {
+		switch(cl) {
+			case SEARCH: return search;
+			case FILTER: return filter;
+			case BULK: return bulk;
+			default: return lookup;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.cache;
+
+import be.fedict.lodtools.web.helpers.Truncation;
+import be.fedict.lodtools.web.resources.EndpointClass;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+
+/**
+ * Add caching headers to successful GET responses, so they can be cached by the proxy.
+ * 
+ * Responses get a Cache-Control header depending on the class of endpoint
+ * (unless the resource already set one), vary on the Accept header, 
+ * and list the subjects they contain as surrogate keys, to be purged after updates.
+ * 
+ * @author Bart.Hanssens
+ */
+@Priority(Priorities.HEADER_DECORATOR)
+public class CacheHeaderFilter implements ContainerResponseFilter {
+	public final static String SURROGATE_KEY = "Surrogate-Key";
+	// key of responses with too many subjects, purged on every update
+	public final static String ALL = "all";
+	
+	private final CacheConfig cfg;
+	
+	/**
+	 * Get surrogate keys for a model
+	 * 
+	 * @param m model
+	 * @return space separated keys
+	 */
+	private String getKeys(Model m) {
+		Set<String> keys = new LinkedHashSet<>();
+		for (Resource subj: m.subjects()) {
+			if (subj instanceof IRI && !subj.equals(Truncation.MARKER)) {
+				if (keys.size() >= cfg.getMaxKeys()) {
+					return ALL;
+				}
+				keys.add(subj.stringValue());
+			}
+		}
+		return String.join(" ", keys);
+	}
+	
+	@Override
+	public void filter(ContainerRequestContext req, ContainerResponseContext resp) throws IOException {
+		String method = req.getMethod();
+		if (!(method.equals(HttpMethod.GET) || method.equals(HttpMethod.HEAD)) 
+				|| resp.getStatus() != Response.Status.OK.getStatusCode()) {
+			return;
+		}
+		MultivaluedMap<String,Object> headers = resp.getHeaders();
+		
+		if (! headers.containsKey(HttpHeaders.CACHE_CONTROL)) {
+			CachePolicyConfig policy = cfg.getPolicy(
+							EndpointClass.of("/" + req.getUriInfo().getPath()));
+			CacheControl cc = new CacheControl();
+			cc.setNoTransform(false);
+			cc.setMaxAge(policy.getMaxAge());
+			if (policy.getSharedMaxAge() >= 0) {
+				cc.setSMaxAge(policy.getSharedMaxAge());
+			}
+			headers.putSingle(HttpHeaders.CACHE_CONTROL, cc);
+		}
+		
+		String vary = resp.getHeaderString(HttpHeaders.VARY);
+		if (vary == null || vary.isEmpty()) {
+			headers.putSingle(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		} else if (! vary.matches("(?i).*\\b" + HttpHeaders.ACCEPT + "\\b(?!-).*")) {
+			headers.putSingle(HttpHeaders.VARY, vary + ", " + HttpHeaders.ACCEPT);
+		}
+		
+		if (resp.getEntity() instanceof Model) {
+			String keys = getKeys((Model) resp.getEntity());
+			if (! keys.isEmpty()) {
+				headers.putSingle(SURROGATE_KEY, keys);
+			}
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg cache configuration
+	 */
+	public CacheHeaderFilter(CacheConfig cfg) {
+		this.cfg = cfg;
+	}
+}
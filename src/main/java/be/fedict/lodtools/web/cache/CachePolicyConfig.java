@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Caching of the responses of one class of endpoints
+ * 
+ * @author Bart.Hanssens
+ */
+public class CachePolicyConfig {
+	@Min(0)
+	private int maxAge;
+	@Min(-1)
+	private int sharedMaxAge;
+
+	/**
+	 * Get maximum age in browsers and other caches
+	 * 
+	 * @return time in seconds
+	 */
+	@JsonProperty
+	public int getMaxAge() {
+		return maxAge;
+	}
+
+	@JsonProperty
+	public void setMaxAge(int maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Get maximum age in shared caches (the proxy), which are purged on updates
+	 * 
+	 * @return time in seconds, -1 for same as max age
+	 */
+	@JsonProperty
+	public int getSharedMaxAge() {
+		return sharedMaxAge;
+	}
+
+	@JsonProperty
+	public void setSharedMaxAge(int sharedMaxAge) {
+		this.sharedMaxAge = sharedMaxAge;
+	}
+	
+	public CachePolicyConfig() {
+		this(300, -1);
+	}
+	
+	public CachePolicyConfig(int maxAge, int sharedMaxAge) {
+		this.maxAge = maxAge;
+		this.sharedMaxAge = sharedMaxAge;
+	}
+}
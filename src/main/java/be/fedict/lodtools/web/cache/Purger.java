@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.cache;
+
+import be.fedict.lodtools.web.resources.StoreListener;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Purge the surrogate keys of updated subjects from the proxy cache.
+ * 
+ * Keys are collected and sent every second in a Surrogate-Key header,
+ * together with the key of the responses listing too many subjects.
+ * A failed purge is not retried: the entries expire after their shared max age.
+ * 
+ * @author Bart.Hanssens
+ */
+public class Purger implements StoreListener, Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(Purger.class);
+	
+	private final static int MAX_HEADER = 4096;
+	private final static int TIMEOUT = 5000;
+	
+	private final URL url;
+	private final String method;
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	private final Meter purged;
+	private final Meter failed;
+	private ScheduledExecutorService exec;
+	
+	@Override
+	public void added(Model m) {
+		for (Resource subj: m.subjects()) {
+			if (subj instanceof IRI) {
+				pending.add(subj.stringValue());
+			}
+		}
+	}
+
+	@Override
+	public void deleted(IRI subj, Model m) {
+		pending.add(subj.stringValue());
+	}
+	
+	/**
+	 * Send one purge request
+	 * 
+	 * @param keys space separated surrogate keys
+	 * @throws IOException 
+	 */
+	private void send(String keys) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		try {
+			conn.setRequestMethod(method);
+			conn.setConnectTimeout(TIMEOUT);
+			conn.setReadTimeout(TIMEOUT);
+			conn.setRequestProperty(CacheHeaderFilter.SURROGATE_KEY, keys);
+			if (method.equals("POST") || method.equals("PUT")) {
+				conn.setDoOutput(true);
+				conn.setFixedLengthStreamingMode(0);
+				conn.getOutputStream().close();
+			}
+			int code = conn.getResponseCode();
+			// not found: nothing cached for these keys
+			if (code >= 400 && code != HttpURLConnection.HTTP_NOT_FOUND) {
+				throw new IOException("Purge returned status " + code);
+			}
+		} finally {
+			conn.disconnect();
+		}
+	}
+	
+	/**
+	 * Purge the keys collected so far, in batches limited by the size of the header
+	 */
+	private void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		List<String> batches = new ArrayList<>();
+		StringBuilder keys = new StringBuilder(CacheHeaderFilter.ALL);
+		int n = 0;
+		for (Iterator<String> it = pending.iterator(); it.hasNext(); n++) {
+			String key = it.next();
+			it.remove();
+			if (keys.length() + key.length() + 1 > MAX_HEADER) {
+				batches.add(keys.toString());
+				keys.setLength(0);
+			}
+			if (keys.length() > 0) {
+				keys.append(' ');
+			}
+			keys.append(key);
+		}
+		batches.add(keys.toString());
+		
+		for (String batch: batches) {
+			try {
+				send(batch);
+			} catch (IOException ioe) {
+				failed.mark();
+				LOG.warn("Purge failed: {}", ioe.getMessage());
+				return;
+			}
+		}
+		purged.mark(n);
+	}
+	
+	@Override
+	public void start() throws Exception {
+		exec = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "purge");
+			t.setDaemon(true);
+			return t;
+		});
+		exec.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public void stop() throws Exception {
+		exec.shutdown();
+		exec.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS);
+		flush();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg cache configuration
+	 * @param metrics metric registry
+	 */
+	public Purger(CacheConfig cfg, MetricRegistry metrics) {
+		try {
+			this.url = new URL(cfg.getPurge());
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Invalid purge URL", e);
+		}
+		this.method = cfg.getPurgeMethod();
+		this.purged = metrics.meter(MetricRegistry.name(Purger.class, "purged"));
+		this.failed = metrics.meter(MetricRegistry.name(Purger.class, "failed"));
+	}
+}
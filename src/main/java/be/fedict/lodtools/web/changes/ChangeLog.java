@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.changes;
+
+import be.fedict.lodtools.web.helpers.JSONLDStreamWriter;
+import be.fedict.lodtools.web.resources.StoreListener;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent, sequenced log of the subjects changed in a repository.
+ * 
+ * Each line of the log file contains a sequence number, the type of change 
+ * ('P' for put, 'D' for delete) and the IRI of the subject.
+ * Every 1024th line is indexed in memory, so a page can be read without 
+ * scanning the whole file.
+ * When the file grows too large, the oldest half of the changes is removed.
+ * 
+ * @author Bart.Hanssens
+ */
+public class ChangeLog implements StoreListener, Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(ChangeLog.class);
+	
+	private final static char PUT = 'P';
+	private final static char DELETE = 'D';
+	private final static int INDEX = 1024;
+	private final static int SIZE = 64 * 1024;
+	private final static String TMP = ".tmp";
+	
+	private final Path file;
+	private final int pageSize;
+	private final long maxWait;
+	private final long maxSize;
+	
+	// sequence number to offset in the file, for every INDEX-th change
+	private final NavigableMap<Long,Long> index = new TreeMap<>();
+	private final Set<Runnable> waiters = ConcurrentHashMap.newKeySet();
+	private FileChannel ch;
+	private long length;
+	private volatile long first = 1;
+	private volatile long last;
+	
+	/**
+	 * Page of changes
+	 */
+	public static class Page {
+		private final long since;
+		private final long last;
+		private final boolean more;
+		private final List<String[]> changes;
+		
+		/**
+		 * Get the sequence number of the last change in this page
+		 * 
+		 * @return sequence number
+		 */
+		public long getLast() {
+			return last;
+		}
+		
+		/**
+		 * Check if there are more changes after this page
+		 * 
+		 * @return true if more changes are available
+		 */
+		public boolean hasMore() {
+			return more;
+		}
+		
+		/**
+		 * Get the page as JSON
+		 * 
+		 * @return JSON string
+		 * @throws IOException 
+		 */
+		public String toJSON() throws IOException {
+			StringBuilder json = new StringBuilder(64 + changes.size() * 96);
+			json.append("{\"since\":").append(since)
+				.append(",\"last\":").append(last)
+				.append(",\"more\":").append(more)
+				.append(",\"changes\":[");
+			for (int i = 0; i < changes.size(); i++) {
+				String[] c = changes.get(i);
+				if (i > 0) {
+					json.append(',');
+				}
+				json.append("{\"seq\":").append(c[0])
+					.append(",\"op\":\"")
+					.append(c[1].charAt(0) == PUT ? "put" : "delete")
+					.append("\",\"subject\":");
+				JSONLDStreamWriter.quote(json, c[2]);
+				json.append('}');
+			}
+			return json.append("]}").toString();
+		}
+		
+		public Page(long since, long last, boolean more, List<String[]> changes) {
+			this.since = since;
+			this.last = last;
+			this.more = more;
+			this.changes = changes;
+		}
+	}
+	
+	/**
+	 * Get the sequence number of the oldest change in the log, 
+	 * older changes were removed
+	 * 
+	 * @return sequence number
+	 */
+	public long getFirst() {
+		return first;
+	}
+	
+	/**
+	 * Get the sequence number of the last change
+	 * 
+	 * @return sequence number, 0 when empty
+	 */
+	public long getLast() {
+		return last;
+	}
+	
+	/**
+	 * Get the maximum number of changes in a page
+	 * 
+	 * @return number of changes
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+	
+	/**
+	 * Get the maximum time a long-poll request waits
+	 * 
+	 * @return time in seconds
+	 */
+	public long getMaxWait() {
+		return maxWait;
+	}
+	
+	/**
+	 * Split a line of the log into sequence number, type and subject
+	 * 
+	 * @param line line
+	 * @return array of three strings or null if the line is malformed
+	 */
+	private static String[] parse(String line) {
+		int p1 = line.indexOf(' ');
+		int p2 = line.indexOf(' ', p1 + 1);
+		if (p1 < 1 || p2 != p1 + 2 || p2 == line.length() - 1) {
+			return null;
+		}
+		for (int i = 0; i < p1; i++) {
+			if (! Character.isDigit(line.charAt(i))) {
+				return null;
+			}
+		}
+		return new String[] { line.substring(0, p1), 
+							line.substring(p1 + 1, p2), line.substring(p2 + 1) };
+	}
+	
+	/**
+	 * Get the changes after a sequence number
+	 * 
+	 * @param since sequence number of the last change already seen
+	 * @param max maximum number of changes
+	 * @return page of changes
+	 * @throws IOException 
+	 */
+	public Page getPage(long since, int max) throws IOException {
+		long upto = last;
+		long start;
+		FileChannel c;
+		// open under lock, the file may be replaced when truncated
+		synchronized(this) {
+			Map.Entry<Long,Long> e = index.floorEntry(since + 1);
+			start = (e != null) ? e.getValue() : 0;
+			c = FileChannel.open(file, StandardOpenOption.READ);
+		}
+		List<String[]> changes = new ArrayList<>(Math.min(max, pageSize));
+		long seq = since;
+		boolean more = false;
+		
+		// changes after upto may still be written
+		try (FileChannel fc = c;
+			BufferedReader r = new BufferedReader(new InputStreamReader(
+						Channels.newInputStream(c.position(start)), StandardCharsets.UTF_8), SIZE)) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				String[] change = parse(line);
+				if (change == null) {
+					break;
+				}
+				long s = Long.parseLong(change[0]);
+				if (s <= since) {
+					continue;
+				}
+				if (s > upto) {
+					break;
+				}
+				if (changes.size() == max) {
+					more = true;
+					break;
+				}
+				changes.add(change);
+				seq = s;
+			}
+		}
+		return new Page(since, seq, more, changes);
+	}
+	
+	/**
+	 * Run a task once there are changes after a sequence number
+	 * 
+	 * @param since sequence number
+	 * @param task task to run
+	 */
+	public void await(long since, Runnable task) {
+		waiters.add(task);
+		if (last > since && waiters.remove(task)) {
+			task.run();
+		}
+	}
+	
+	/**
+	 * Stop waiting for changes, e.g. when a request timed out
+	 * 
+	 * @param task task passed to await
+	 */
+	public void cancel(Runnable task) {
+		waiters.remove(task);
+	}
+	
+	/**
+	 * Append changes to the log and wake up waiting requests
+	 * 
+	 * @param op type of change
+	 * @param subjects changed subjects
+	 */
+	private void append(char op, Collection<IRI> subjects) {
+		if (subjects.isEmpty()) {
+			return;
+		}
+		synchronized(this) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(subjects.size() * 96);
+			Map<Long,Long> offsets = new HashMap<>();
+			long seq = last;
+			for (IRI subj: subjects) {
+				seq++;
+				if (seq % INDEX == 1) {
+					offsets.put(seq, length + out.size());
+				}
+				String line = seq + " " + op + " " + subj.stringValue() + "\n";
+				byte[] b = line.getBytes(StandardCharsets.UTF_8);
+				out.write(b, 0, b.length);
+			}
+			ByteBuffer buf = ByteBuffer.wrap(out.toByteArray());
+			try {
+				long pos = length;
+				while (buf.hasRemaining()) {
+					pos += ch.write(buf, pos);
+				}
+				ch.force(false);
+			} catch (IOException ioe) {
+				LOG.error("Could not record {} changes in {}", subjects.size(), file, ioe);
+				return;
+			}
+			index.putAll(offsets);
+			length += buf.limit();
+			last = seq;
+			if (length > maxSize) {
+				try {
+					truncate();
+				} catch (IOException ioe) {
+					LOG.error("Could not remove old changes from {}", file, ioe);
+				}
+			}
+		}
+		List<Runnable> tasks = new ArrayList<>(waiters);
+		waiters.removeAll(tasks);
+		tasks.forEach(Runnable::run);
+	}
+	
+	/**
+	 * Remove the oldest half of the changes, starting the file at an indexed change.
+	 * The remaining changes are copied to a temporary file, which replaces the log.
+	 * 
+	 * @throws IOException 
+	 */
+	private void truncate() throws IOException {
+		Map.Entry<Long,Long> cut = null;
+		for (Map.Entry<Long,Long> e: index.entrySet()) {
+			if (e.getValue() >= length - maxSize / 2) {
+				cut = e;
+				break;
+			}
+		}
+		if (cut == null || cut.getValue() == 0) {
+			return;
+		}
+		long offset = cut.getValue();
+		long seq = cut.getKey();
+		
+		Path tmp = file.resolveSibling(file.getFileName() + TMP);
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, 
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long pos = offset;
+			while (pos < length) {
+				pos += ch.transferTo(pos, length - pos, out);
+			}
+			out.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		ch.close();
+		ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		NavigableMap<Long,Long> kept = new TreeMap<>(index.tailMap(seq, true));
+		index.clear();
+		kept.forEach((k,v) -> index.put(k, v - offset));
+		length -= offset;
+		first = seq;
+		LOG.info("Removed changes before sequence {} from {}", seq, file);
+	}
+	
+	@Override
+	public void added(Model m) {
+		List<IRI> subjects = new ArrayList<>();
+		for (Resource subj: m.subjects()) {
+			if (subj instanceof IRI) {
+				subjects.add((IRI) subj);
+			}
+		}
+		append(PUT, subjects);
+	}
+
+	@Override
+	public void deleted(IRI subj, Model m) {
+		append(DELETE, Collections.singletonList(subj));
+	}
+	
+	@Override
+	public synchronized void start() throws IOException {
+		Files.createDirectories(file.getParent());
+		ch = FileChannel.open(file, StandardOpenOption.CREATE, 
+								StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long size = ch.size();
+		long pos = 0;
+		long seq = 0;
+		try (BufferedReader r = new BufferedReader(new InputStreamReader(
+				Files.newInputStream(file), StandardCharsets.UTF_8), SIZE)) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				String[] change = parse(line);
+				long next = pos + line.getBytes(StandardCharsets.UTF_8).length + 1;
+				// stop at a malformed line or a line without newline
+				if (change == null || next > size) {
+					break;
+				}
+				seq = Long.parseLong(change[0]);
+				if (pos == 0) {
+					first = seq;
+				}
+				if (seq % INDEX == 1) {
+					index.put(seq, pos);
+				}
+				pos = next;
+			}
+		}
+		if (pos < size) {
+			LOG.warn("Discarding {} bytes at the end of {}", size - pos, file);
+			ch.truncate(pos);
+		}
+		length = pos;
+		last = seq;
+		if (pos == 0) {
+			first = 1;
+		}
+		LOG.info("Change log {} at sequence {}", file, last);
+	}
+
+	@Override
+	public synchronized void stop() throws IOException {
+		ch.close();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg change feed configuration
+	 * @param name repository name
+	 */
+	public ChangeLog(ChangesConfig cfg, String name) {
+		this.file = Paths.get(cfg.getDir(), name.toLowerCase() + ".log");
+		this.pageSize = cfg.getPageSize();
+		this.maxWait = cfg.getMaxWait();
+		this.maxSize = cfg.getMaxSize() * 1024 * 1024;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.changes;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * Configuration of the change feeds
+ * 
+ * @author Bart.Hanssens
+ */
+public class ChangesConfig {
+	@NotEmpty
+	private String dir;
+	
+	@Min(1)
+	private int pageSize = 1000;
+	@Min(1)
+	private long maxWait = 30;
+	@Min(1)
+	private long maxSize = 64;
+
+	@JsonProperty
+	public String getDir() {
+		return dir;
+	}
+
+	@JsonProperty
+	public void setDir(String dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Get maximum number of changes returned in one page
+	 * 
+	 * @return number of changes
+	 */
+	@JsonProperty
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	@JsonProperty
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Get maximum time a long-poll request waits for new changes
+	 * 
+	 * @return time in seconds
+	 */
+	@JsonProperty
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	@JsonProperty
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+	
+	/**
+	 * Get size above which the oldest half of a change log is removed
+	 * 
+	 * @return size in MB
+	 */
+	@JsonProperty
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	@JsonProperty
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+}
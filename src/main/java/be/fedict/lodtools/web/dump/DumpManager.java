@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.dump;
+
+import be.fedict.lodtools.web.helpers.FastNTriplesWriter;
+import be.fedict.lodtools.web.resources.StoreListener;
+import be.fedict.lodtools.web.store.RepositoryUnavailableException;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.RDFHandlerWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes gzip-compressed N-Triples and Turtle dumps of each repository,
+ * and optionally of each named graph in a repository.
+ * 
+ * Dumps are made periodically, and some time after the last write to a
+ * repository. Files are written to a temporary file first and then renamed,
+ * so a file being downloaded is never replaced halfway.
+ * 
+ * @author Bart.Hanssens
+ */
+public class DumpManager implements Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(DumpManager.class);
+	
+	public final static String NT = ".nt.gz";
+	public final static String TTL = ".ttl.gz";
+	private final static String TMP = ".tmp";
+	private final static int SIZE = 64 * 1024;
+	
+	private final Path dir;
+	private final long interval;
+	private final long settle;
+	private final boolean graphs;
+	
+	private final Map<String,Repository> repos = new ConcurrentHashMap<>();
+	private final Map<String,Long> changed = new ConcurrentHashMap<>();
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	private ScheduledExecutorService exec;
+	
+	/**
+	 * Add repository to be dumped
+	 * 
+	 * @param name repository name
+	 * @param repo repository
+	 */
+	public void addRepository(String name, Repository repo) {
+		repos.put(name.toLowerCase(), repo);
+	}
+	
+	/**
+	 * Get a store listener triggering a dump after writes to a repository
+	 * 
+	 * @param name repository name
+	 * @return store listener
+	 */
+	public StoreListener getListener(String name) {
+		String key = name.toLowerCase();
+		return new StoreListener() {
+			@Override
+			public void added(Model m) {
+				changed(key);
+			}
+			@Override
+			public void deleted(IRI subj, Model m) {
+				changed(key);
+			}
+		};
+	}
+	
+	/**
+	 * Get names of the repositories
+	 * 
+	 * @return set of names
+	 */
+	public Set<String> getNames() {
+		return repos.keySet();
+	}
+	
+	/**
+	 * Get the directory containing the dumps
+	 * 
+	 * @return directory
+	 */
+	public Path getDir() {
+		return dir;
+	}
+	
+	/**
+	 * Mark repository as changed, and schedule a dump when writes have settled
+	 * 
+	 * @param name repository name
+	 */
+	private void changed(String name) {
+		changed.put(name, System.nanoTime());
+		if (pending.add(name)) {
+			exec.schedule(() -> settled(name), settle, TimeUnit.SECONDS);
+		}
+	}
+	
+	/**
+	 * Dump the repository when there were no writes during the settle period,
+	 * otherwise check again later.
+	 * 
+	 * @param name repository name
+	 */
+	private void settled(String name) {
+		long wait = TimeUnit.SECONDS.toNanos(settle) - (System.nanoTime() - changed.get(name));
+		if (wait > 0) {
+			exec.schedule(() -> settled(name), wait, TimeUnit.NANOSECONDS);
+			return;
+		}
+		pending.remove(name);
+		dumpQuietly(name);
+	}
+	
+	/**
+	 * Dump all repositories
+	 */
+	private void dumpAll() {
+		repos.keySet().forEach(this::dumpQuietly);
+	}
+	
+	/**
+	 * Dump repository, logging errors instead of throwing them
+	 * 
+	 * @param name repository name
+	 */
+	private void dumpQuietly(String name) {
+		try {
+			dump(name);
+		} catch (RepositoryUnavailableException e) {
+			LOG.info("Repository {} not available yet, dump postponed", name);
+			exec.schedule(() -> dumpQuietly(name), 1, TimeUnit.MINUTES);
+		} catch (IOException|RepositoryException|RDFHandlerException e) {
+			LOG.error("Dump of {} failed", name, e);
+		}
+	}
+	
+	/**
+	 * Get file name for a named graph, replacing characters not safe in paths
+	 * 
+	 * @param ctx named graph
+	 * @return file name without extension
+	 */
+	private static String fileName(Resource ctx) {
+		return ctx.stringValue().replaceFirst("^[a-z]+://", "").replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+	
+	/**
+	 * Write one set of dump files, N-Triples and Turtle, in a single pass
+	 * 
+	 * @param conn repository connection
+	 * @param base path and file name without extension
+	 * @param ctx contexts, all statements if empty
+	 * @throws IOException
+	 */
+	private void write(RepositoryConnection conn, Path base, Resource... ctx) throws IOException {
+		Path nt = Paths.get(base + NT);
+		Path ttl = Paths.get(base + TTL);
+		Path ntTmp = Paths.get(nt + TMP);
+		Path ttlTmp = Paths.get(ttl + TMP);
+		
+		try (OutputStream ntOut = new GZIPOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(ntTmp), SIZE), SIZE);
+			OutputStream ttlOut = new GZIPOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(ttlTmp), SIZE), SIZE)) {
+			conn.export(new RDFHandlerWrapper(new FastNTriplesWriter(ntOut), 
+											Rio.createWriter(RDFFormat.TURTLE, ttlOut)), ctx);
+		} catch (IOException|RepositoryException|RDFHandlerException e) {
+			Files.deleteIfExists(ntTmp);
+			Files.deleteIfExists(ttlTmp);
+			throw e;
+		}
+		Files.move(ntTmp, nt, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		Files.move(ttlTmp, ttl, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Dump repository and its named graphs
+	 * 
+	 * @param name repository name
+	 * @throws IOException
+	 */
+	public synchronized void dump(String name) throws IOException {
+		Repository repo = repos.get(name);
+		if (repo == null) {
+			throw new IOException("Unknown repository " + name);
+		}
+		long start = System.currentTimeMillis();
+		
+		try (RepositoryConnection conn = repo.getConnection()) {
+			write(conn, dir.resolve(name));
+			if (! graphs) {
+				return;
+			}
+			
+			Path sub = dir.resolve(name);
+			Files.createDirectories(sub);
+			Set<Path> written = new HashSet<>();
+			List<Resource> ctxs = Iterations.asList(conn.getContextIDs());
+			for (Resource ctx: ctxs) {
+				Path base = sub.resolve(fileName(ctx));
+				write(conn, base, ctx);
+				written.add(Paths.get(base + NT));
+				written.add(Paths.get(base + TTL));
+			}
+			// remove dumps of graphs that no longer exist
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(sub)) {
+				for (Path f: files) {
+					if (! written.contains(f)) {
+						Files.deleteIfExists(f);
+					}
+				}
+			}
+		} finally {
+			LOG.info("Dump of {} took {} ms", name, System.currentTimeMillis() - start);
+		}
+	}
+
+	@Override
+	public void start() throws Exception {
+		Files.createDirectories(dir);
+		exec = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "dump");
+			t.setDaemon(true);
+			return t;
+		});
+		// dump missing files right away
+		for (String name: repos.keySet()) {
+			if (! Files.exists(dir.resolve(name + NT))) {
+				exec.execute(() -> dumpQuietly(name));
+			}
+		}
+		exec.scheduleWithFixedDelay(this::dumpAll, interval, interval, TimeUnit.MINUTES);
+	}
+
+	@Override
+	public void stop() throws Exception {
+		exec.shutdownNow();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg dump configuration
+	 */
+	public DumpManager(DumpConfig cfg) {
+		this.dir = Paths.get(cfg.getDir()).toAbsolutePath().normalize();
+		this.interval = cfg.getInterval();
+		this.settle = cfg.getSettle();
+		this.graphs = cfg.getGraphs();
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.dump;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Serves the dump files, supporting single byte range requests and 
+ * conditional requests.
+ * 
+ * The file is memory-mapped and handed to Jetty as a whole, so the content
+ * is written to the socket from the page cache without copying it through
+ * the heap.
+ * 
+ * @author Bart.Hanssens
+ */
+public class DumpServlet extends HttpServlet {
+	private final static String GZIP = "application/gzip";
+	
+	private final Path dir;
+	
+	/**
+	 * Parse a single byte range
+	 * 
+	 * @param range range header
+	 * @param len length of the file
+	 * @return start and end (inclusive), empty array if not satisfiable, null to ignore
+	 */
+	private static long[] parseRange(String range, long len) {
+		if (! range.startsWith("bytes=") || range.contains(",")) {
+			return null;
+		}
+		String[] r = range.substring(6).trim().split("-", 2);
+		if (r.length != 2) {
+			return null;
+		}
+		try {
+			long start, end;
+			if (r[0].isEmpty()) {
+				// suffix: last n bytes
+				long n = Long.parseLong(r[1]);
+				start = Math.max(0, len - n);
+				end = len - 1;
+				if (n == 0) {
+					return new long[0];
+				}
+			} else {
+				start = Long.parseLong(r[0]);
+				end = r[1].isEmpty() ? len - 1 : Math.min(Long.parseLong(r[1]), len - 1);
+			}
+			if (start > end || start >= len) {
+				return new long[0];
+			}
+			return new long[] { start, end };
+		} catch (NumberFormatException nfe) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Write part of the file to the output
+	 * 
+	 * @param ch file channel
+	 * @param start start position
+	 * @param count number of bytes
+	 * @param out output
+	 * @throws IOException 
+	 */
+	private static void send(FileChannel ch, long start, long count, OutputStream out) 
+															throws IOException {
+		if (out instanceof HttpOutput && count <= Integer.MAX_VALUE) {
+			((HttpOutput) out).sendContent(ch.map(FileChannel.MapMode.READ_ONLY, start, count));
+			return;
+		}
+		WritableByteChannel wc = Channels.newChannel(out);
+		for (long pos = start; pos < start + count; ) {
+			pos += ch.transferTo(pos, start + count - pos, wc);
+		}
+	}
+	
+	/**
+	 * List available dumps, one relative path per line
+	 * 
+	 * @param resp response
+	 * @throws IOException 
+	 */
+	private void list(HttpServletResponse resp) throws IOException {
+		resp.setContentType("text/plain;charset=utf-8");
+		PrintWriter w = resp.getWriter();
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.filter(f -> f.toString().endsWith(".gz"))
+				.map(f -> dir.relativize(f).toString().replace('\\', '/'))
+				.sorted()
+				.forEach(w::println);
+		}
+	}
+	
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		String p = req.getPathInfo();
+		if (p == null || p.equals("/")) {
+			list(resp);
+			return;
+		}
+		Path file = dir.resolve(p.substring(1)).normalize();
+		if (! file.startsWith(dir) || ! file.toString().endsWith(".gz") 
+									|| ! Files.isRegularFile(file)) {
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			long len = ch.size();
+			long modified = Files.getLastModifiedTime(file).toMillis();
+			String etag = "\"" + Long.toHexString(len) + "-" + Long.toHexString(modified) + "\"";
+			
+			resp.setHeader(HttpHeaders.ETAG, etag);
+			resp.setDateHeader(HttpHeaders.LAST_MODIFIED, modified);
+			resp.setHeader("Accept-Ranges", "bytes");
+			
+			String match = req.getHeader(HttpHeaders.IF_NONE_MATCH);
+			if (etag.equals(match) || (match == null 
+					&& req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE) >= modified / 1000 * 1000)) {
+				resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			
+			long start = 0;
+			long end = len - 1;
+			String range = req.getHeader("Range");
+			String ifRange = req.getHeader("If-Range");
+			if (range != null && (ifRange == null || ifRange.equals(etag))) {
+				long[] r = parseRange(range, len);
+				if (r != null && r.length == 0) {
+					resp.setHeader("Content-Range", "bytes */" + len);
+					resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+				if (r != null) {
+					start = r[0];
+					end = r[1];
+					resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+					resp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + len);
+				}
+			}
+			
+			resp.setContentType(GZIP);
+			resp.setHeader("Content-Disposition", 
+							"attachment; filename=\"" + file.getFileName() + "\"");
+			resp.setContentLengthLong(end - start + 1);
+			if (req.getMethod().equals("HEAD") || len == 0) {
+				return;
+			}
+			send(ch, start, end - start + 1, resp.getOutputStream());
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param dir directory containing the dumps
+	 */
+	public DumpServlet(Path dir) {
+		this.dir = dir;
+	}
+}
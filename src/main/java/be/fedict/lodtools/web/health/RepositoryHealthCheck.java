@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.health;
+
+import be.fedict.lodtools.web.store.RepositoryBinder;
+
+import com.codahale.metrics.health.HealthCheck;
+
+import java.util.List;
+
+/**
+ * Check if all repositories are bound.
+ * Repositories that do not exist in the store are only reported.
+ * 
+ * @author Bart.Hanssens
+ */
+public class RepositoryHealthCheck extends HealthCheck {
+	private final RepositoryBinder binder;
+	
+	@Override
+	protected Result check() throws Exception {
+		List<String> unbound = binder.getUnbound();
+		if (! unbound.isEmpty()) {
+			return Result.unhealthy("Repositories not available: " + unbound);
+		}
+		List<String> missing = binder.getMissing();
+		return missing.isEmpty() 
+					? Result.healthy() 
+					: Result.healthy("Repositories not found: " + missing);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param binder repository binder
+	 */
+	public RepositoryHealthCheck(RepositoryBinder binder) {
+		this.binder = binder;
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.health;
+
+import be.fedict.lodtools.web.warmup.Warmup;
+
+import com.codahale.metrics.health.HealthCheck;
+
+/**
+ * Report unhealthy until the warm-up is finished
+ * 
+ * @author Bart.Hanssens
+ */
+public class WarmupHealthCheck extends HealthCheck {
+	private final Warmup warmup;
+	
+	@Override
+	protected Result check() throws Exception {
+		String msg = String.format("%d of %d paths prefetched, %d failed", 
+						warmup.getDone(), warmup.getTotal(), warmup.getFailed());
+		return warmup.isFinished() 
+					? Result.healthy(msg) 
+					: Result.unhealthy("Warming up: " + msg);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param warmup warm-up
+	 */
+	public WarmupHealthCheck(Warmup warmup) {
+		this.warmup = warmup;
+	}
+}
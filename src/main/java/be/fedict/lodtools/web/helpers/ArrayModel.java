@@ -0,0 +1,646 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.helpers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.AbstractModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+
+/**
+ * Compact model for query results.
+ * 
+ * Statements are kept in insertion order in an array, with only a small hash table
+ * of positions to skip duplicates, instead of the subject, predicate and object indexes 
+ * of a general purpose model. 
+ * An index on subjects is only built when the model is filtered on a subject,
+ * which the stream writers do not need, and is kept up to date afterwards.
+ * Removed statements leave a gap, the array is compacted when it is full.
+ * 
+ * Namespaces are shared with the set given to the constructor,
+ * and only copied when changed.
+ * 
+ * @author Bart.Hanssens
+ */
+public class ArrayModel extends AbstractModel {
+	private final static ValueFactory F = SimpleValueFactory.getInstance();
+	
+	// removed statements are null
+	private Statement[] statements;
+	// end of the used part of the array
+	private int size = 0;
+	// number of statements
+	private int count = 0;
+	// incremented when positions change
+	private int compactions = 0;
+	// positions + 1, 0 is empty
+	private int[] table;
+	// statements about the truncation marker
+	private int markers = 0;
+	
+	private Set<Namespace> namespaces;
+	private boolean shared;
+	
+	// subject -> positions, built when needed
+	private transient Map<Resource,int[]> subjects;
+	
+	/**
+	 * Hash code of a statement, including the context
+	 * 
+	 * @param st statement
+	 * @return hash code
+	 */
+	private static int hash(Statement st) {
+		int h = st.getSubject().hashCode();
+		h = 31 * h + st.getPredicate().hashCode();
+		h = 31 * h + st.getObject().hashCode();
+		h = 31 * h + Objects.hashCode(st.getContext());
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * Check if statement is the same triple in the same context
+	 * 
+	 * @param a statement
+	 * @param b statement
+	 * @return true if same
+	 */
+	private static boolean same(Statement a, Statement b) {
+		return a.getSubject().equals(b.getSubject()) && a.getPredicate().equals(b.getPredicate())
+				&& a.getObject().equals(b.getObject()) 
+				&& Objects.equals(a.getContext(), b.getContext());
+	}
+	
+	/**
+	 * Check if a statement matches a pattern
+	 * 
+	 * @param st statement
+	 * @param s subject or null
+	 * @param p predicate or null
+	 * @param o object or null
+	 * @param c contexts, none for any context, null for the default graph
+	 * @return true when matching
+	 */
+	private static boolean matches(Statement st, Resource s, IRI p, Value o, Resource... c) {
+		if ((s != null && !s.equals(st.getSubject())) || (p != null && !p.equals(st.getPredicate()))
+				|| (o != null && !o.equals(st.getObject()))) {
+			return false;
+		}
+		if (c == null || c.length == 0) {
+			return true;
+		}
+		for (Resource ctx: c) {
+			if (Objects.equals(ctx, st.getContext())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Create statements for a pattern without wildcards
+	 * 
+	 * @param s subject
+	 * @param p predicate
+	 * @param o object
+	 * @param c contexts, none or null for the default graph
+	 * @return statements
+	 */
+	private static Statement[] create(Resource s, IRI p, Value o, Resource... c) {
+		if (c == null || c.length == 0) {
+			return new Statement[] { F.createStatement(s, p, o) };
+		}
+		Statement[] sts = new Statement[c.length];
+		for (int i = 0; i < c.length; i++) {
+			sts[i] = (c[i] == null) ? F.createStatement(s, p, o) 
+									: F.createStatement(s, p, o, c[i]);
+		}
+		return sts;
+	}
+	
+	/**
+	 * Add a position to the index on subjects
+	 * 
+	 * @param index subject index
+	 * @param i position
+	 */
+	private void index(Map<Resource,int[]> index, int i) {
+		Resource subj = statements[i].getSubject();
+		int[] pos = index.get(subj);
+		if (pos == null) {
+			pos = new int[] { 0, 0, 0, 0 };
+			index.put(subj, pos);
+		} else if (pos[0] + 1 == pos.length) {
+			pos = Arrays.copyOf(pos, pos.length * 2);
+			index.put(subj, pos);
+		}
+		// first element is the number of positions
+		pos[++pos[0]] = i;
+	}
+	
+	/**
+	 * Find the position of a statement
+	 * 
+	 * @param st statement
+	 * @return position or -1 when not found
+	 */
+	private int find(Statement st) {
+		int mask = table.length - 1;
+		for (int slot = hash(st) & mask, pos; (pos = table[slot]) != 0; slot = (slot + 1) & mask) {
+			// removed statements keep their slot until the array is compacted
+			if (statements[pos - 1] != null && same(statements[pos - 1], st)) {
+				return pos - 1;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Remove gaps, and double the array and the hash table if more than half is used
+	 */
+	private void compact() {
+		Statement[] arr = (count > statements.length / 2) 
+				? new Statement[statements.length * 2] : new Statement[statements.length];
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			if (statements[i] != null) {
+				arr[j++] = statements[i];
+			}
+		}
+		statements = arr;
+		size = j;
+		table = new int[arr.length * 2];
+		for (int i = 0; i < size; i++) {
+			int slot = hash(statements[i]) & (table.length - 1);
+			while (table[slot] != 0) {
+				slot = (slot + 1) & (table.length - 1);
+			}
+			table[slot] = i + 1;
+		}
+		subjects = null;
+		compactions++;
+	}
+	
+	@Override
+	public boolean add(Statement st) {
+		if (find(st) >= 0) {
+			return false;
+		}
+		if (size == statements.length) {
+			compact();
+		}
+		int mask = table.length - 1;
+		int slot = hash(st) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		statements[size] = st;
+		table[slot] = size + 1;
+		if (subjects != null) {
+			index(subjects, size);
+		}
+		if (st.getSubject().equals(Truncation.MARKER)) {
+			markers++;
+		}
+		size++;
+		count++;
+		return true;
+	}
+	
+	@Override
+	public boolean add(Resource s, IRI p, Value o, Resource... c) {
+		boolean changed = false;
+		for (Statement st: create(s, p, o, c)) {
+			changed |= add(st);
+		}
+		return changed;
+	}
+	
+	/**
+	 * Remove the statement at a position
+	 * 
+	 * @param i position
+	 */
+	private void removeAt(int i) {
+		Statement st = statements[i];
+		statements[i] = null;
+		count--;
+		if (subjects != null) {
+			int[] pos = subjects.get(st.getSubject());
+			int j = 1;
+			while (pos[j] != i) {
+				j++;
+			}
+			System.arraycopy(pos, j + 1, pos, j, pos[0] - j);
+			if (--pos[0] == 0) {
+				subjects.remove(st.getSubject());
+			}
+		}
+		if (st.getSubject().equals(Truncation.MARKER)) {
+			markers--;
+		}
+	}
+	
+	/**
+	 * Get positions of the statements about a subject
+	 * 
+	 * @param s subject
+	 * @return positions, possibly empty
+	 */
+	private int[] positions(Resource s) {
+		int[] pos = bySubject().get(s);
+		return (pos != null) ? pos : new int[] { 0 };
+	}
+	
+	/**
+	 * Get the index on subjects, building it if needed
+	 * 
+	 * @return subject index
+	 */
+	private Map<Resource,int[]> bySubject() {
+		if (subjects == null) {
+			Map<Resource,int[]> index = new LinkedHashMap<>();
+			for (int i = 0; i < size; i++) {
+				if (statements[i] != null) {
+					index(index, i);
+				}
+			}
+			subjects = index;
+		}
+		return subjects;
+	}
+	
+	/**
+	 * Iterate over the statements matching a test, optionally using the subject index
+	 * 
+	 * @param s subject or null
+	 * @param test test
+	 * @return iterator
+	 */
+	private Iterator<Statement> iterator(Resource s, Predicate<Statement> test) {
+		// copy, since removing changes the positions of a subject
+		int[] pos = (s != null) ? positions(s).clone() : null;
+		int end = (s != null) ? pos[0] : size;
+		
+		return new Iterator<Statement>() {
+			private final int expected = compactions;
+			private int i = 0;
+			private int last = -1;
+			private int next = -1;
+			
+			@Override
+			public boolean hasNext() {
+				if (expected != compactions) {
+					throw new ConcurrentModificationException();
+				}
+				while (next < 0 && i < end) {
+					int j = (pos != null) ? pos[++i] : i++;
+					if (statements[j] != null && test.test(statements[j])) {
+						next = j;
+					}
+				}
+				return next >= 0;
+			}
+
+			@Override
+			public Statement next() {
+				if (! hasNext()) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = -1;
+				return statements[last];
+			}
+			
+			@Override
+			public void remove() {
+				if (last < 0 || statements[last] == null) {
+					throw new IllegalStateException();
+				}
+				removeAt(last);
+			}
+		};
+	}
+	
+	@Override
+	public boolean contains(Resource s, IRI p, Value o, Resource... c) {
+		return iterator(s, st -> matches(st, s, p, o, c)).hasNext();
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		return (o instanceof Statement) && find((Statement) o) >= 0;
+	}
+
+	@Override
+	public Model filter(Resource s, IRI p, Value o, Resource... c) {
+		return new Filtered(s, st -> matches(st, s, p, o, c));
+	}
+	
+	@Override
+	public Set<Resource> subjects() {
+		if (count == 0) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(bySubject().keySet());
+	}
+	
+	@Override
+	public boolean remove(Resource s, IRI p, Value o, Resource... c) {
+		boolean changed = false;
+		for (Iterator<Statement> i = iterator(s, st -> matches(st, s, p, o, c)); i.hasNext(); ) {
+			i.next();
+			i.remove();
+			changed = true;
+		}
+		return changed;
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		int i = (o instanceof Statement) ? find((Statement) o) : -1;
+		if (i < 0) {
+			return false;
+		}
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public boolean clear(Resource... c) {
+		return remove(null, null, null, c);
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(statements, 0, size, null);
+		Arrays.fill(table, 0);
+		size = 0;
+		count = 0;
+		markers = 0;
+		subjects = null;
+		compactions++;
+	}
+	
+	@Override
+	public void removeTermIteration(Iterator<Statement> iter, Resource s, IRI p, Value o, Resource... c) {
+		remove(s, p, o, c);
+	}
+
+	@Override
+	public Iterator<Statement> iterator() {
+		return iterator(null, st -> true);
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Check if the model contains the truncation marker, without building
+	 * the index on subjects.
+	 * 
+	 * @return true if truncated
+	 * @see Truncation
+	 */
+	public boolean isTruncated() {
+		return markers > 0;
+	}
+	
+	@Override
+	public Set<Namespace> getNamespaces() {
+		return namespaces;
+	}
+
+	@Override
+	public void setNamespace(Namespace ns) {
+		if (namespaces.contains(ns)) {
+			return;
+		}
+		if (shared) {
+			namespaces = new HashSet<>(namespaces);
+			shared = false;
+		}
+		Optional<Namespace> old = getNamespace(ns.getPrefix());
+		if (old.isPresent()) {
+			namespaces.remove(old.get());
+		}
+		namespaces.add(ns);
+	}
+	
+	@Override
+	public Optional<Namespace> getNamespace(String prefix) {
+		for (Namespace ns: namespaces) {
+			if (ns.getPrefix().equals(prefix)) {
+				return Optional.of(ns);
+			}
+		}
+		return Optional.empty();
+	}
+
+	@Override
+	public Optional<Namespace> removeNamespace(String prefix) {
+		Optional<Namespace> old = getNamespace(prefix);
+		if (old.isPresent()) {
+			if (shared) {
+				namespaces = new HashSet<>(namespaces);
+				shared = false;
+			}
+			namespaces.remove(old.get());
+		}
+		return old;
+	}
+	
+	/**
+	 * Statements matching a pattern, as a view on the model
+	 */
+	private class Filtered extends AbstractModel {
+		private final Resource subj;
+		private final Predicate<Statement> test;
+		
+		@Override
+		public boolean add(Statement st) {
+			if (! test.test(st)) {
+				throw new IllegalArgumentException("Statement does not match filter");
+			}
+			return ArrayModel.this.add(st);
+		}
+		
+		@Override
+		public boolean add(Resource s, IRI p, Value o, Resource... c) {
+			boolean changed = false;
+			for (Statement st: create(s, p, o, c)) {
+				changed |= add(st);
+			}
+			return changed;
+		}
+		
+		@Override
+		public boolean contains(Resource s, IRI p, Value o, Resource... c) {
+			return ArrayModel.this.iterator((subj != null) ? subj : s, 
+									test.and(st -> matches(st, s, p, o, c))).hasNext();
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return (o instanceof Statement) && test.test((Statement) o) 
+												&& ArrayModel.this.contains(o);
+		}
+		
+		@Override
+		public Model filter(Resource s, IRI p, Value o, Resource... c) {
+			return new Filtered((subj != null) ? subj : s, 
+									test.and(st -> matches(st, s, p, o, c)));
+		}
+		
+		@Override
+		public boolean remove(Resource s, IRI p, Value o, Resource... c) {
+			boolean changed = false;
+			for (Iterator<Statement> i = ArrayModel.this.iterator((subj != null) ? subj : s, 
+							test.and(st -> matches(st, s, p, o, c))); i.hasNext(); ) {
+				i.next();
+				i.remove();
+				changed = true;
+			}
+			return changed;
+		}
+		
+		@Override
+		public boolean remove(Object o) {
+			return (o instanceof Statement) && test.test((Statement) o) 
+												&& ArrayModel.this.remove(o);
+		}
+		
+		@Override
+		public boolean clear(Resource... c) {
+			return remove(null, null, null, c);
+		}
+		
+		@Override
+		public void clear() {
+			remove(null, null, null);
+		}
+		
+		@Override
+		public void removeTermIteration(Iterator<Statement> iter, Resource s, IRI p, Value o, Resource... c) {
+			remove(s, p, o, c);
+		}
+		
+		@Override
+		public Iterator<Statement> iterator() {
+			return ArrayModel.this.iterator(subj, test);
+		}
+		
+		@Override
+		public int size() {
+			int n = 0;
+			for (Iterator<Statement> i = iterator(); i.hasNext(); i.next()) {
+				n++;
+			}
+			return n;
+		}
+		
+		@Override
+		public Set<Namespace> getNamespaces() {
+			return ArrayModel.this.getNamespaces();
+		}
+		
+		@Override
+		public void setNamespace(Namespace ns) {
+			ArrayModel.this.setNamespace(ns);
+		}
+		
+		@Override
+		public Optional<Namespace> getNamespace(String prefix) {
+			return ArrayModel.this.getNamespace(prefix);
+		}
+		
+		@Override
+		public Optional<Namespace> removeNamespace(String prefix) {
+			return ArrayModel.this.removeNamespace(prefix);
+		}
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param subj subject to look up in the index, or null
+		 * @param test test for statements
+		 */
+		Filtered(Resource subj, Predicate<Statement> test) {
+			this.subj = subj;
+			this.test = test;
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param namespaces shared set of namespaces, not modified by this model
+	 * @param capacity initial capacity
+	 */
+	public ArrayModel(Set<Namespace> namespaces, int capacity) {
+		int cap = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1;
+		this.statements = new Statement[cap];
+		this.table = new int[cap * 2];
+		this.namespaces = namespaces;
+		this.shared = true;
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param namespaces shared set of namespaces, not modified by this model
+	 */
+	public ArrayModel(Set<Namespace> namespaces) {
+		this(namespaces, 16);
+	}
+	
+	/**
+	 * Constructor, with an empty set of namespaces
+	 */
+	public ArrayModel() {
+		this(Collections.emptySet());
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.helpers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+/**
+ * N-Triples writer encoding terms directly into a reused byte buffer,
+ * without intermediate strings.
+ * 
+ * Output is UTF-8, characters not allowed in IRIs and control characters
+ * in literals are escaped. Contexts are ignored.
+ * 
+ * @author Bart.Hanssens
+ */
+public class FastNTriplesWriter extends AbstractRDFHandler {
+	private final static int SIZE = 64 * 1024;
+	// longest encoding of a single char: \\uXXXX
+	private final static int MAX_CHAR = 6;
+	private final static byte[] HEX = "0123456789ABCDEF".getBytes();
+	
+	// buffer per thread, reused across responses
+	private final static ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+	
+	// ASCII characters that can be written as-is in an IRI
+	private final static boolean[] IRI_SAFE = new boolean[128];
+	static {
+		for (char c = 0x21; c < 0x7F; c++) {
+			IRI_SAFE[c] = "<>\"{}|^`\\".indexOf(c) < 0;
+		}
+	}
+	
+	private final OutputStream out;
+	private byte[] buf;
+	private int pos = 0;
+	
+	/**
+	 * Write buffer to the output stream
+	 * 
+	 * @throws RDFHandlerException 
+	 */
+	private void flushBuffer() throws RDFHandlerException {
+		try {
+			out.write(buf, 0, pos);
+			pos = 0;
+		} catch (IOException ioe) {
+			throw new RDFHandlerException(ioe);
+		}
+	}
+	
+	/**
+	 * Write an ASCII character
+	 * 
+	 * @param c character
+	 */
+	private void ascii(char c) {
+		if (pos == buf.length) {
+			flushBuffer();
+		}
+		buf[pos++] = (byte) c;
+	}
+	
+	/**
+	 * Write an ASCII string
+	 * 
+	 * @param s string 
+	 */
+	private void ascii(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			ascii(s.charAt(i));
+		}
+	}
+	
+	/**
+	 * Write character as \\uXXXX escape sequence
+	 * 
+	 * @param c character
+	 */
+	private void unicode(char c) {
+		buf[pos++] = '\\';
+		buf[pos++] = 'u';
+		buf[pos++] = HEX[(c >> 12) & 0xF];
+		buf[pos++] = HEX[(c >> 8) & 0xF];
+		buf[pos++] = HEX[(c >> 4) & 0xF];
+		buf[pos++] = HEX[c & 0xF];
+	}
+	
+	/**
+	 * Write non-ASCII character (or surrogate pair) as UTF-8
+	 * 
+	 * @param s string
+	 * @param i index of the character
+	 * @return index of the last character used
+	 */
+	private int utf8(String s, int i) {
+		char c = s.charAt(i);
+		if (c < 0x800) {
+			buf[pos++] = (byte) (0xC0 | (c >> 6));
+			buf[pos++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c) && i + 1 < s.length() 
+											&& Character.isLowSurrogate(s.charAt(i + 1))) {
+			int cp = Character.toCodePoint(c, s.charAt(++i));
+			buf[pos++] = (byte) (0xF0 | (cp >> 18));
+			buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+			buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+		} else if (Character.isSurrogate(c)) {
+			unicode('\uFFFD');
+		} else {
+			buf[pos++] = (byte) (0xE0 | (c >> 12));
+			buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buf[pos++] = (byte) (0x80 | (c & 0x3F));
+		}
+		return i;
+	}
+	
+	/**
+	 * Write IRI between angle brackets
+	 * 
+	 * @param iri IRI as string
+	 */
+	private void iri(String iri) {
+		ascii('<');
+		int len = iri.length();
+		for (int i = 0; i < len; i++) {
+			if (pos + MAX_CHAR > buf.length) {
+				flushBuffer();
+			}
+			char c = iri.charAt(i);
+			if (c < 0x80) {
+				if (IRI_SAFE[c]) {
+					buf[pos++] = (byte) c;
+				} else {
+					unicode(c);
+				}
+			} else {
+				i = utf8(iri, i);
+			}
+		}
+		ascii('>');
+	}
+	
+	/**
+	 * Write literal value between double quotes
+	 * 
+	 * @param label literal value
+	 */
+	private void quoted(String label) {
+		ascii('"');
+		int len = label.length();
+		for (int i = 0; i < len; i++) {
+			if (pos + MAX_CHAR > buf.length) {
+				flushBuffer();
+			}
+			char c = label.charAt(i);
+			if (c >= 0x20 && c < 0x7F) {
+				if (c == '"' || c == '\\') {
+					buf[pos++] = '\\';
+				}
+				buf[pos++] = (byte) c;
+			} else if (c < 0x80) {
+				switch (c) {
+					case '\n': buf[pos++] = '\\'; buf[pos++] = 'n'; break;
+					case '\r': buf[pos++] = '\\'; buf[pos++] = 'r'; break;
+					case '\t': buf[pos++] = '\\'; buf[pos++] = 't'; break;
+					default: unicode(c);
+				}
+			} else {
+				i = utf8(label, i);
+			}
+		}
+		ascii('"');
+	}
+	
+	/**
+	 * Write blank node. 
+	 * IDs which are not valid N-Triples labels are hex-encoded.
+	 * 
+	 * @param id blank node ID
+	 */
+	private void bnode(String id) {
+		ascii("_:");
+		boolean valid = !id.isEmpty() && id.charAt(id.length() - 1) != '.' 
+												&& id.charAt(0) != '-' && id.charAt(0) != '.';
+		for (int i = 0; valid && i < id.length(); i++) {
+			char c = id.charAt(i);
+			valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+							|| c == '_' || c == '-' || c == '.';
+		}
+		if (valid) {
+			ascii(id);
+			return;
+		}
+		ascii('x');
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+			ascii((char) HEX[(c >> 12) & 0xF]);
+			ascii((char) HEX[(c >> 8) & 0xF]);
+			ascii((char) HEX[(c >> 4) & 0xF]);
+			ascii((char) HEX[c & 0xF]);
+		}
+	}
+	
+	/**
+	 * Write resource (IRI or blank node)
+	 * 
+	 * @param res resource
+	 */
+	private void resource(Resource res) {
+		if (res instanceof IRI) {
+			iri(res.stringValue());
+		} else {
+			bnode(((BNode) res).getID());
+		}
+	}
+	
+	/**
+	 * Write value (resource or literal)
+	 * 
+	 * @param val value
+	 */
+	private void value(Value val) {
+		if (val instanceof Literal) {
+			Literal lit = (Literal) val;
+			quoted(lit.getLabel());
+			if (lit.getLanguage().isPresent()) {
+				ascii('@');
+				ascii(lit.getLanguage().get());
+			} else if (lit.getDatatype() != null && !lit.getDatatype().equals(XMLSchema.STRING)) {
+				ascii("^^");
+				iri(lit.getDatatype().stringValue());
+			}
+		} else {
+			resource((Resource) val);
+		}
+	}
+	
+	@Override
+	public void startRDF() throws RDFHandlerException {
+		if (buf == null) {
+			buf = BUFFERS.get();
+			if (buf == null) {
+				buf = new byte[SIZE];
+			} else {
+				BUFFERS.set(null);
+			}
+		}
+	}
+	
+	@Override
+	public void handleStatement(Statement st) throws RDFHandlerException {
+		resource(st.getSubject());
+		ascii(' ');
+		iri(st.getPredicate().stringValue());
+		ascii(' ');
+		value(st.getObject());
+		ascii(" .\n");
+	}
+	
+	@Override
+	public void endRDF() throws RDFHandlerException {
+		flushBuffer();
+		try {
+			out.flush();
+		} catch (IOException ioe) {
+			throw new RDFHandlerException(ioe);
+		}
+		BUFFERS.set(buf);
+		buf = null;
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param out output stream
+	 */
+	public FastNTriplesWriter(OutputStream out) {
+		this.out = out;
+	}
+}
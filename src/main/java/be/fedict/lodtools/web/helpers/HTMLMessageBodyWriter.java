@@ -25,40 +25,42 @@
  */
 package be.fedict.lodtools.web.helpers;
 
+import be.fedict.lodtools.web.monitoring.ServerTiming;
+
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.Iterator;
-import java.util.Optional;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
 
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
-import org.apache.commons.io.Charsets;
-import org.eclipse.rdf4j.model.IRI;
 
+import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
-import org.eclipse.rdf4j.rio.RDFFormat;
-import org.eclipse.rdf4j.rio.RDFHandlerException;
-import org.eclipse.rdf4j.rio.Rio;
 
 /**
- * HTML Writer
+ * HTML Writer, writing one table row per statement directly to the output.
  * 
  * @author Bart.Hanssens
  */
 @Provider
 @Produces(MediaType.TEXT_HTML + ";charset=utf-8")
 public class HTMLMessageBodyWriter implements MessageBodyWriter<Model> {
+	private final static int SIZE = 32 * 1024;
+	
 	@Override
 	public boolean isWriteable(Class<?> type, Type generic, Annotation[] antns, MediaType mt) {
 		return generic == Model.class;
@@ -69,72 +71,90 @@ public class HTMLMessageBodyWriter implements MessageBodyWriter<Model> {
 		return 0; // ignored by Jersey 2.0 anyway
 	}
 
-	private String shorten(Set<Namespace> ns, IRI pred) {
-		String pref = "";
-		for(Namespace n: ns) {
-			if (n.getName().equals(pred.getNamespace())) {
-				pref = n.getPrefix();
-				break;
+	/**
+	 * Write text, escaping HTML special characters
+	 * 
+	 * @param w output
+	 * @param s text
+	 * @throws IOException 
+	 */
+	private static void escape(Writer w, String s) throws IOException {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '&': w.write("&amp;"); break;
+				case '<': w.write("&lt;"); break;
+				case '>': w.write("&gt;"); break;
+				case '"': w.write("&quot;"); break;
+				case '\'': w.write("&#39;"); break;
+				default: w.write(c);
 			}
 		}
-		if (! pref.isEmpty()) {
-			return pref + ":" + pred.getLocalName();
-		}
-		return pred.stringValue();
 	}
 	
-	private String link(Value val) {
+	/**
+	 * Write value, as a link when it is a resource on one of our domains
+	 * 
+	 * @param w output
+	 * @param val value
+	 * @throws IOException 
+	 */
+	private static void link(Writer w, Value val) throws IOException {
 		String href = val.stringValue();
-		if (val instanceof Resource) {
-			if (href.contains("belgif.be")) {
-				href = "<a href='" + href + "'>" + href + "</a>";
-			}
+		if (val instanceof Resource && href.contains("belgif.be")) {
+			w.write("<a href='");
+			escape(w, href);
+			w.write("'>");
+			escape(w, href);
+			w.write("</a>");
+		} else {
+			escape(w, href);
 		}
-		return href;
 	}
 		
 	@Override
 	public void writeTo(Model m, Class<?> type, Type generic, Annotation[] antns, MediaType mt, 
 										MultivaluedMap<String, Object> mm, OutputStream out) 
 									throws IOException, WebApplicationException {
-		StringBuilder builder = new StringBuilder();
-		builder.append("<!DOCTYPE html>\n")
-				.append("<html>\n")
-				.append("<head>\n")
-				.append("<meta charset='UTF-8'>\n")
-				.append("<title></title>\n")
-				.append("</head>\n")
-				.append("<body>\n");
+		if (m.isEmpty()) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+		Truncation.addHeaders(m, mm);
+		JSONLDContext ctx = JSONLDContext.of(m.getNamespaces());
 		
+		long start = System.nanoTime();
+		Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), SIZE);
+		try {
+			w.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset='UTF-8'>\n"
+					+ "<title></title>\n</head>\n<body>\n");
 
-		builder.append("<table>\n")
-				.append("<tr><th>Namespace</th><th><tr>Prefix</tr>");
-		Set<Namespace> ns = m.getNamespaces();
+			w.write("<table>\n<tr><th>Namespace</th><th>Prefix</th></tr>\n");
+			for (Namespace n: m.getNamespaces()) {
+				w.write("<tr><td>");
+				escape(w, n.getName());
+				w.write("</td><td>");
+				escape(w, n.getPrefix());
+				w.write("</td></tr>\n");
+			}
+			w.write("</table>\n");
 
-		for (Namespace n: ns) {
-			builder.append("<tr><td>")
-					.append(n.getName()).append("</td><td>")
-					.append(n.getPrefix()).append("</td><td>\n");
-		}
-		builder.append("</table>\n");
-		
-		builder.append("<table>\n").
-				append("<tr><th>Subject</th><th>Predicate</th><th>Object<th></tr>\n");
-		
-		Iterator<Statement> iter = m.iterator();
-		while(iter.hasNext()) {
-			Statement stmt = iter.next();
-			builder.append("<tr><td>")
-					.append(stmt.getSubject()).append("</td><td>")
-					.append(shorten(ns, stmt.getPredicate())).append("</td><td>");
-			builder.append(link(stmt.getObject())).append("</td></tr>\n");
+			w.write("<table>\n<tr><th>Subject</th><th>Predicate</th><th>Object</th></tr>\n");
+			for (Statement stmt: m) {
+				IRI pred = stmt.getPredicate();
+				w.write("<tr><td>");
+				escape(w, stmt.getSubject().stringValue());
+				w.write("</td><td>");
+				escape(w, ctx.getPrefix(pred.getNamespace()) != null ? ctx.compact(pred) 
+																: pred.stringValue());
+				w.write("</td><td>");
+				link(w, stmt.getObject());
+				w.write("</td></tr>\n");
+			}
+			w.write("</table>\n</body>\n</html>");
+			w.flush();
+		} finally {
+			ServerTiming.record(ServerTiming.Phase.SER, start);
 		}
-		builder.append("</table>\n");
-		
-		builder.append("</body>\n")
-				.append("</html>");
-		
-		out.write(builder.toString().getBytes(Charsets.UTF_8));
-		out.flush();
 	}
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Namespace;
+
+/**
+ * JSON-LD context compiled from a set of namespaces.
+ * 
+ * Contexts are immutable and cached per set of namespaces, so the lookup
+ * structures and the serialized context are only built once.
+ * 
+ * @author Bart.Hanssens
+ */
+public class JSONLDContext {
+	private final static Map<Set<Namespace>,JSONLDContext> CACHE = new ConcurrentHashMap<>();
+	
+	// namespace name to prefix
+	private final Map<String,String> prefixes = new HashMap<>();
+	// all namespaces, longest name first, for IRIs not split on a namespace
+	private final List<Namespace> ordered = new ArrayList<>();
+	private final String json;
+	private final String etag;
+	
+	/**
+	 * Get (cached) context for a set of namespaces
+	 * 
+	 * @param ns set of namespaces
+	 * @return context
+	 */
+	public static JSONLDContext of(Set<Namespace> ns) {
+		JSONLDContext ctx = CACHE.get(ns);
+		if (ctx == null) {
+			Set<Namespace> key = Collections.unmodifiableSet(new HashSet<>(ns));
+			ctx = CACHE.computeIfAbsent(key, JSONLDContext::new);
+		}
+		return ctx;
+	}
+	
+	/**
+	 * Get the prefix for a namespace
+	 * 
+	 * @param name namespace name
+	 * @return prefix or null
+	 */
+	public String getPrefix(String name) {
+		return prefixes.get(name);
+	}
+	
+	/**
+	 * Compact IRI to prefix:localname, using the longest matching namespace
+	 * 
+	 * @param iri IRI
+	 * @return compacted IRI or full IRI as string
+	 */
+	public String compact(IRI iri) {
+		String pref = prefixes.get(iri.getNamespace());
+		if (pref != null && !iri.getLocalName().startsWith("//")) {
+			return pref + ":" + iri.getLocalName();
+		}
+		String s = iri.stringValue();
+		for (Namespace n: ordered) {
+			if (s.startsWith(n.getName()) && !s.startsWith("//", n.getName().length())) {
+				return n.getPrefix() + ":" + s.substring(n.getName().length());
+			}
+		}
+		return s;
+	}
+	
+	/**
+	 * Get the context object as JSON string
+	 * 
+	 * @return JSON object
+	 */
+	public String getJSON() {
+		return json;
+	}
+	
+	/**
+	 * Get entity tag of the context
+	 * 
+	 * @return entity tag
+	 */
+	public String getETag() {
+		return etag;
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ns namespaces
+	 */
+	private JSONLDContext(Set<Namespace> ns) {
+		// sorted, so the same set always gives the same document
+		Set<Namespace> sorted = new TreeSet<>(Comparator.comparing(Namespace::getPrefix));
+		sorted.addAll(ns);
+		
+		StringBuilder w = new StringBuilder("{");
+		try {
+			for (Namespace n: sorted) {
+				// not usable as JSON-LD term
+				if (n.getPrefix().isEmpty() || n.getPrefix().startsWith("@")) {
+					continue;
+				}
+				prefixes.put(n.getName(), n.getPrefix());
+				ordered.add(n);
+				if (w.length() > 1) {
+					w.append(',');
+				}
+				JSONLDStreamWriter.quote(w, n.getPrefix());
+				w.append(':');
+				JSONLDStreamWriter.quote(w, n.getName());
+			}
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		w.append('}');
+		// longest first
+		ordered.sort(Comparator.comparing((Namespace n) -> n.getName().length()).reversed());
+		
+		this.json = w.toString();
+		this.etag = Integer.toHexString(json.hashCode());
+	}
+}
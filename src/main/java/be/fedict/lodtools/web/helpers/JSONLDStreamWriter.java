@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.helpers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+
+/**
+ * Write compacted JSON-LD directly to a stream, one node object per subject.
+ * 
+ * Unlike the Rio JSON-LD writer, no intermediate JSON-LD document is built.
+ * 
+ * @author Bart.Hanssens
+ */
+public class JSONLDStreamWriter {
+	private final static int SIZE = 32 * 1024;
+	private final static char[] HEX = "0123456789abcdef".toCharArray();
+	
+	/**
+	 * Write string as quoted JSON string
+	 * 
+	 * @param w output
+	 * @param s string
+	 * @throws IOException 
+	 */
+	public static void quote(Appendable w, String s) throws IOException {
+		w.append('"');
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '"': w.append("\\\""); break;
+				case '\\': w.append("\\\\"); break;
+				case '\n': w.append("\\n"); break;
+				case '\r': w.append("\\r"); break;
+				case '\t': w.append("\\t"); break;
+				default: 
+					// control chars, and line separators (not valid in javascript strings)
+					if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+						w.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+							.append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+					} else {
+						w.append(c);
+					}
+			}
+		}
+		w.append('"');
+	}
+	
+	/**
+	 * Get identifier of a resource, either compacted IRI or blank node
+	 * 
+	 * @param ctx JSON-LD context
+	 * @param res resource
+	 * @return identifier
+	 */
+	private static String id(JSONLDContext ctx, Resource res) {
+		return (res instanceof IRI) ? ctx.compact((IRI) res) : "_:" + ((BNode) res).getID();
+	}
+	
+	/**
+	 * Write an object value 
+	 * 
+	 * @param w output
+	 * @param ctx JSON-LD context
+	 * @param val value
+	 * @throws IOException 
+	 */
+	private static void writeValue(Writer w, JSONLDContext ctx, Value val) throws IOException {
+		if (! (val instanceof Literal)) {
+			w.write("{\"@id\":");
+			quote(w, id(ctx, (Resource) val));
+			w.write('}');
+			return;
+		}
+		Literal lit = (Literal) val;
+		if (lit.getLanguage().isPresent()) {
+			w.write("{\"@value\":");
+			quote(w, lit.getLabel());
+			w.write(",\"@language\":");
+			quote(w, lit.getLanguage().get());
+			w.write('}');
+		} else if (lit.getDatatype() == null || lit.getDatatype().equals(XMLSchema.STRING)) {
+			quote(w, lit.getLabel());
+		} else {
+			w.write("{\"@value\":");
+			quote(w, lit.getLabel());
+			w.write(",\"@type\":");
+			quote(w, ctx.compact(lit.getDatatype()));
+			w.write('}');
+		}
+	}
+	
+	/**
+	 * Write one node object with all properties of a subject
+	 * 
+	 * @param w output
+	 * @param ctx JSON-LD context
+	 * @param subj subject
+	 * @param m statements about this subject
+	 * @throws IOException 
+	 */
+	private static void writeNode(Writer w, JSONLDContext ctx, Resource subj, Model m) 
+															throws IOException {
+		w.write("{\"@id\":");
+		quote(w, id(ctx, subj));
+		
+		for (IRI pred: m.predicates()) {
+			Set<Value> objs = m.filter(subj, pred, null).objects();
+			boolean type = pred.equals(RDF.TYPE) 
+							&& objs.stream().allMatch(o -> o instanceof Resource);
+			w.write(',');
+			quote(w, type ? "@type" : ctx.compact(pred));
+			w.write(':');
+			
+			if (objs.size() > 1) {
+				w.write('[');
+			}
+			boolean first = true;
+			for (Value obj: objs) {
+				if (! first) {
+					w.write(',');
+				}
+				first = false;
+				if (type) {
+					quote(w, id(ctx, (Resource) obj));
+				} else {
+					writeValue(w, ctx, obj);
+				}
+			}
+			if (objs.size() > 1) {
+				w.write(']');
+			}
+		}
+		w.write('}');
+	}
+	
+	/**
+	 * Write model as JSON-LD, with the context of the model's namespaces inline
+	 * 
+	 * @param m model
+	 * @param out output stream
+	 * @throws IOException 
+	 */
+	public static void write(Model m, OutputStream out) throws IOException {
+		JSONLDContext ctx = JSONLDContext.of(m.getNamespaces());
+		
+		Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), SIZE);
+		w.write("{\"@context\":");
+		w.write(ctx.getJSON());
+		w.write(",\"@graph\":[");
+		boolean first = true;
+		for (Resource subj: m.subjects()) {
+			if (! first) {
+				w.write(",\n");
+			}
+			first = false;
+			writeNode(w, ctx, subj, m.filter(subj, null, null));
+		}
+		w.write("]}");
+		w.flush();
+	}
+}
@@ -38,6 +38,7 @@ public class RDFMediaType {
 	public final static String JSONLD = "application/ld+json";
 	public final static String NTRIPLES = "application/n-triples";
 	public final static String TTL = "text/turtle";
+	public final static String BINARY = "application/x-binary-rdf";
 	
 	/**
 	 * Get RDF Format from mediatype
@@ -51,6 +52,7 @@ public class RDFMediaType {
 		switch(mt.toString()) {
 			case RDFMediaType.NTRIPLES: fmt = RDFFormat.NTRIPLES; break;
 			case RDFMediaType.TTL: fmt = RDFFormat.TURTLE; break;
+			case RDFMediaType.BINARY: fmt = RDFFormat.BINARY; break;
 			default: fmt = RDFFormat.JSONLD; break;
 		}
 		return fmt;
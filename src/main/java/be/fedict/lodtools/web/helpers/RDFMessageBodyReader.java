@@ -51,7 +51,8 @@ import org.eclipse.rdf4j.rio.Rio;
 @Provider
 @Consumes({RDFMediaType.JSONLD + ";charset=utf-8", 
 			RDFMediaType.NTRIPLES + ";charset=utf-8", 
-			RDFMediaType.TTL + ";charset=utf-8"})
+			RDFMediaType.TTL + ";charset=utf-8",
+			RDFMediaType.BINARY})
 public class RDFMessageBodyReader implements MessageBodyReader<Model> {
 	private final static String BASE = "http://www.fedict.be"; // TODO
 	
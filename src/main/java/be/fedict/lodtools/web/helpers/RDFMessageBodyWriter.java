@@ -25,6 +25,8 @@
  */
 package be.fedict.lodtools.web.helpers;
 
+import be.fedict.lodtools.web.monitoring.ServerTiming;
+
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
@@ -52,7 +54,8 @@ import org.eclipse.rdf4j.rio.Rio;
 @Provider
 @Produces({RDFMediaType.JSONLD + ";charset=utf-8", 
 			RDFMediaType.NTRIPLES + ";charset=utf-8", 
-			RDFMediaType.TTL + ";charset=utf-8"})
+			RDFMediaType.TTL + ";charset=utf-8",
+			RDFMediaType.BINARY})
 public class RDFMessageBodyWriter implements MessageBodyWriter<Model> {
 	@Override
 	public boolean isWriteable(Class<?> type, Type generic, Annotation[] antns, MediaType mt) {
@@ -71,13 +74,23 @@ public class RDFMessageBodyWriter implements MessageBodyWriter<Model> {
 		if (m.isEmpty()) {
 			throw new WebApplicationException(Response.Status.NOT_FOUND);
 		}
+		Truncation.addHeaders(m, mm);
 		
 		RDFFormat fmt = RDFMediaType.getRDFFormat(mt);
 		
+		long start = System.nanoTime();
 		try {
-			Rio.write(m, out, fmt);
+			if (fmt.equals(RDFFormat.NTRIPLES)) {
+				Rio.write(m, new FastNTriplesWriter(out));
+			} else if (fmt.equals(RDFFormat.JSONLD)) {
+				JSONLDStreamWriter.write(m, out);
+			} else {
+				Rio.write(m, out, fmt);
+			}
 		} catch (RDFHandlerException ex) {
 			throw new WebApplicationException(ex);
+		} finally {
+			ServerTiming.record(ServerTiming.Phase.SER, start);
 		}
 	}
 }
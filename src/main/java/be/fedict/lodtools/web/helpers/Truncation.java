@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.helpers;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+
+/**
+ * Marks a model as truncated, using a marker triple which is turned into
+ * HTTP headers when the model is written.
+ * 
+ * @author Bart.Hanssens
+ */
+public class Truncation {
+	private final static ValueFactory F = SimpleValueFactory.getInstance();
+	
+	public final static IRI MARKER = F.createIRI("urn:lodtools:truncated");
+	public final static String WARNING = "Warning";
+	
+	/**
+	 * Add marker triples
+	 * 
+	 * @param m model
+	 * @param alternative location of the complete data, or null
+	 */
+	public static void mark(Model m, IRI alternative) {
+		m.add(MARKER, RDFS.COMMENT, F.createLiteral("Result truncated after " 
+														+ m.size() + " triples"));
+		if (alternative != null) {
+			m.add(MARKER, RDFS.SEEALSO, alternative);
+		}
+	}
+	
+	/**
+	 * Check if a model is truncated
+	 * 
+	 * @param m model
+	 * @return true if truncated
+	 */
+	public static boolean isTruncated(Model m) {
+		if (m instanceof ArrayModel) {
+			return ((ArrayModel) m).isTruncated();
+		}
+		return m.contains(MARKER, null, null);
+	}
+	
+	/**
+	 * Add warning and link to the complete data to the response headers, 
+	 * if the model is truncated.
+	 * 
+	 * @param m model
+	 * @param headers response headers
+	 */
+	public static void addHeaders(Model m, MultivaluedMap<String,Object> headers) {
+		if (! isTruncated(m)) {
+			return;
+		}
+		headers.add(WARNING, "199 - \"Result truncated\"");
+		for (Value v: m.filter(MARKER, RDFS.SEEALSO, null).objects()) {
+			headers.add(HttpHeaders.LINK, "<" + v.stringValue() + ">; rel=\"alternate\"");
+		}
+	}
+}
@@ -0,0 +1,766 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.journal;
+
+import be.fedict.lodtools.web.resources.StoreListener;
+import be.fedict.lodtools.web.store.NewStatements;
+import be.fedict.lodtools.web.store.RepositoryUnavailableException;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import org.eclipse.rdf4j.RDF4JException;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind journal for updates.
+ * 
+ * Updates are appended to a local file and flushed to disk before being 
+ * acknowledged. Concurrent appends share a single flush. 
+ * A background thread applies consecutive updates to the same repository in 
+ * one transaction, and stores the offset of the last applied update, so the 
+ * remaining updates can be replayed after a restart.
+ * 
+ * The offset of an update in the journal is used as operation ID.
+ * 
+ * @author Bart.Hanssens
+ */
+public class Journal implements Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(Journal.class);
+	
+	public enum Status { PENDING, APPLIED, FAILED }
+	
+	private final static byte PUT = 1;
+	private final static byte DELETE = 2;
+	// operation rejected by the store, not applied itself
+	private final static byte FAILURE = 3;
+	// length and checksum
+	private final static int HEADER = 8;
+	private final static String PREFIX = "journal-";
+	private final static String SUFFIX = ".log";
+	private final static String CHECKPOINT = "checkpoint";
+	private final static String TMP = ".tmp";
+	private final static int MAX_FAILED = 10000;
+	private final static long MIN_DELAY = 1000;
+	private final static long MAX_DELAY = 60 * 1000;
+	private final static long STOP_WAIT = 30 * 1000;
+	
+	private final Path dir;
+	private final int batchSize;
+	private final long maxSize;
+	private final ValueFactory fac = SimpleValueFactory.getInstance();
+	
+	private final Map<String,Repository> repos = new ConcurrentHashMap<>();
+	private final Map<String,List<StoreListener>> listeners = new ConcurrentHashMap<>();
+	private final Map<Long,String> failed = Collections.synchronizedMap(
+		new LinkedHashMap<Long,String>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long,String> e) {
+				if (size() <= MAX_FAILED) {
+					return false;
+				}
+				known = Math.max(known, e.getKey() + 1);
+				return true;
+			}
+		});
+	// status of older operations is unknown, failures may have been forgotten
+	private volatile long known;
+	
+	// guards channel, file and base
+	private final Object appendLock = new Object();
+	private final Object syncLock = new Object();
+	private FileChannel ch;
+	private Path file;
+	private long base;
+	private volatile long written;
+	private volatile long synced;
+	private volatile long applied;
+	private volatile boolean running;
+	private Thread applier;
+	
+	/**
+	 * Journal operation
+	 */
+	private static class Op {
+		private final long id;
+		private final long next;
+		private final byte type;
+		private final String name;
+		private final byte[] payload;
+		private Model model;
+		// statements not yet in the store
+		private Model added;
+		private IRI subj;
+		
+		public Op(long id, long next, byte type, String name, byte[] payload) {
+			this.id = id;
+			this.next = next;
+			this.type = type;
+			this.name = name;
+			this.payload = payload;
+		}
+	}
+	
+	/**
+	 * Add repository to which operations are applied
+	 * 
+	 * @param name repository name
+	 * @param repo repository
+	 * @param l listeners to notify when operations are applied
+	 */
+	public void addRepository(String name, Repository repo, List<StoreListener> l) {
+		repos.put(name.toLowerCase(), repo);
+		listeners.put(name.toLowerCase(), l);
+	}
+	
+	/**
+	 * Append the addition of triples
+	 * 
+	 * @param name repository name
+	 * @param m triples
+	 * @return operation ID
+	 * @throws IOException 
+	 */
+	public long put(String name, Model m) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Rio.write(m, out, RDFFormat.BINARY);
+		return append(PUT, name, out.toByteArray());
+	}
+	
+	/**
+	 * Append the removal of all triples of a subject
+	 * 
+	 * @param name repository name
+	 * @param subj subject
+	 * @return operation ID
+	 * @throws IOException 
+	 */
+	public long delete(String name, IRI subj) throws IOException {
+		return append(DELETE, name, subj.stringValue().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Get the status of an operation
+	 * 
+	 * @param id operation ID
+	 * @return status or null when unknown
+	 */
+	public Status getStatus(long id) {
+		if (failed.containsKey(id)) {
+			return Status.FAILED;
+		}
+		if (id < known || id >= written) {
+			return null;
+		}
+		return (id < applied) ? Status.APPLIED : Status.PENDING;
+	}
+	
+	/**
+	 * Get the error message of a failed operation
+	 * 
+	 * @param id operation ID
+	 * @return message or null
+	 */
+	public String getError(long id) {
+		return failed.get(id);
+	}
+	
+	/**
+	 * Get the size of the operations not yet applied
+	 * 
+	 * @return number of bytes
+	 */
+	public long getBacklog() {
+		return written - applied;
+	}
+	
+	/**
+	 * Append an operation and wait until it is flushed to disk
+	 * 
+	 * @param type operation type
+	 * @param name repository name
+	 * @param payload payload
+	 * @return operation ID
+	 * @throws IOException 
+	 */
+	private long append(byte type, String name, byte[] payload) throws IOException {
+		if (! running) {
+			throw new IOException("Journal not running");
+		}
+		byte[] nm = name.toLowerCase().getBytes(StandardCharsets.UTF_8);
+		int len = 1 + 2 + nm.length + payload.length;
+		
+		ByteBuffer buf = ByteBuffer.allocate(HEADER + len);
+		buf.putInt(len).putInt(0).put(type).putShort((short) nm.length).put(nm).put(payload);
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), HEADER, len);
+		buf.putInt(4, (int) crc.getValue());
+		buf.flip();
+		
+		long id;
+		synchronized(appendLock) {
+			id = written;
+			long pos = id - base;
+			while (buf.hasRemaining()) {
+				pos += ch.write(buf, pos);
+			}
+			written = id + HEADER + len;
+		}
+		sync(id + HEADER + len);
+		
+		synchronized(this) {
+			notifyAll();
+		}
+		return id;
+	}
+	
+	/**
+	 * Flush journal to disk, unless another thread already did.
+	 * 
+	 * @param end offset that must be on disk
+	 * @throws IOException 
+	 */
+	private void sync(long end) throws IOException {
+		synchronized(syncLock) {
+			if (synced >= end) {
+				return;
+			}
+			long upto;
+			FileChannel c;
+			synchronized(appendLock) {
+				upto = written;
+				c = ch;
+			}
+			c.force(false);
+			synced = upto;
+		}
+	}
+	
+	/**
+	 * Read buffer from file
+	 * 
+	 * @param c channel
+	 * @param buf buffer to fill
+	 * @param pos position in the file
+	 * @return false if end of file was reached
+	 * @throws IOException 
+	 */
+	private static boolean readFully(FileChannel c, ByteBuffer buf, long pos) 
+															throws IOException {
+		while (buf.hasRemaining()) {
+			if (c.read(buf, pos + buf.position()) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Read an operation
+	 * 
+	 * @param c channel
+	 * @param pos position in the file
+	 * @param id operation ID
+	 * @return operation or null when incomplete or corrupt
+	 * @throws IOException 
+	 */
+	private static Op readOp(FileChannel c, long pos, long id) throws IOException {
+		ByteBuffer head = ByteBuffer.allocate(HEADER);
+		if (! readFully(c, head, pos)) {
+			return null;
+		}
+		int len = head.getInt(0);
+		if (len < 3 || len > c.size() - pos - HEADER) {
+			return null;
+		}
+		ByteBuffer body = ByteBuffer.allocate(len);
+		if (! readFully(c, body, pos + HEADER)) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(body.array(), 0, len);
+		if ((int) crc.getValue() != head.getInt(4)) {
+			return null;
+		}
+		body.flip();
+		byte type = body.get();
+		int nlen = body.getShort() & 0xFFFF;
+		if (3 + nlen > len) {
+			return null;
+		}
+		byte[] nm = new byte[nlen];
+		body.get(nm);
+		byte[] payload = new byte[body.remaining()];
+		body.get(payload);
+		
+		return new Op(id, id + HEADER + len, type, 
+						new String(nm, StandardCharsets.UTF_8), payload);
+	}
+	
+	/**
+	 * Read consecutive operations on the same repository
+	 * 
+	 * @param from start offset
+	 * @param end end offset
+	 * @return list of operations
+	 * @throws IOException 
+	 */
+	private List<Op> read(long from, long end) throws IOException {
+		FileChannel c;
+		long b;
+		synchronized(appendLock) {
+			c = ch;
+			b = base;
+		}
+		List<Op> ops = new ArrayList<>();
+		long pos = from;
+		while (pos < end && ops.size() < batchSize) {
+			Op op = readOp(c, pos - b, pos);
+			if (op == null) {
+				throw new IOException("Corrupt journal record at " + pos);
+			}
+			if (!ops.isEmpty() && !op.name.equals(ops.get(0).name)) {
+				break;
+			}
+			ops.add(op);
+			pos = op.next;
+		}
+		return ops;
+	}
+	
+	/**
+	 * Mark operation as failed, and record the failure in the journal 
+	 * so it is still known after a restart
+	 * 
+	 * @param op operation
+	 * @param msg error message
+	 */
+	private void fail(Op op, String msg) {
+		LOG.error("Journal operation {} on {} failed: {}", op.id, op.name, msg);
+		String err = (msg != null) ? msg : "Unknown error";
+		failed.put(op.id, err);
+		
+		byte[] b = err.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer payload = ByteBuffer.allocate(8 + b.length).putLong(op.id).put(b);
+		try {
+			append(FAILURE, op.name, payload.array());
+		} catch (IOException ioe) {
+			LOG.error("Could not record failure of journal operation {}", op.id, ioe);
+		}
+	}
+	
+	/**
+	 * Load a recorded failure
+	 * 
+	 * @param op failure record
+	 */
+	private void loadFailure(Op op) {
+		ByteBuffer payload = ByteBuffer.wrap(op.payload);
+		if (payload.remaining() >= 8) {
+			long id = payload.getLong();
+			failed.put(id, new String(op.payload, 8, op.payload.length - 8, StandardCharsets.UTF_8));
+		}
+	}
+	
+	/**
+	 * Decode the payload of an operation
+	 * 
+	 * @param op operation
+	 * @return false if payload is invalid
+	 */
+	private boolean decode(Op op) {
+		try {
+			if (op.type == PUT) {
+				op.model = Rio.parse(new ByteArrayInputStream(op.payload), "", 
+										RDFFormat.BINARY);
+			} else if (op.type == DELETE) {
+				op.subj = fac.createIRI(new String(op.payload, StandardCharsets.UTF_8));
+			} else {
+				throw new IOException("Unknown operation type " + op.type);
+			}
+			return true;
+		} catch (IOException|RDF4JException|IllegalArgumentException e) {
+			fail(op, e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * Apply operations in one transaction and notify listeners
+	 * 
+	 * @param repo repository
+	 * @param ops operations
+	 * @throws RDF4JException 
+	 */
+	private void commit(Repository repo, List<Op> ops) throws RDF4JException {
+		List<StoreListener> l = listeners.get(ops.get(0).name);
+		try (RepositoryConnection conn = repo.getConnection()) {
+			conn.begin();
+			// only notify listeners of statements not yet in the store
+			NewStatements ns = l.isEmpty() ? null : NewStatements.of(conn, 
+				ops.stream().filter(op -> op.type == PUT).map(op -> op.model)
+															.collect(Collectors.toList()));
+			for (Op op: ops) {
+				if (op.type == PUT) {
+					op.added = (ns != null) ? ns.filter(op.model) : op.model;
+					conn.add(op.model);
+				} else {
+					op.model = l.isEmpty() ? null
+						: QueryResults.asModel(conn.getStatements(op.subj, null, null, false));
+					conn.remove(op.subj, null, null);
+					if (ns != null) {
+						ns.removed(op.subj);
+					}
+				}
+			}
+			conn.commit();
+		}
+		for (Op op: ops) {
+			for (StoreListener s: l) {
+				try {
+					if (op.type == PUT) {
+						s.added(op.added);
+					} else {
+						s.deleted(op.subj, op.model);
+					}
+				} catch (RuntimeException e) {
+					LOG.error("Listener failed on journal operation {}", op.id, e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Check if an error is likely to go away when retrying
+	 * 
+	 * @param e exception
+	 * @return true if the store could not be reached
+	 */
+	private static boolean isTransient(RDF4JException e) {
+		return (e instanceof RepositoryUnavailableException) 
+				|| (e instanceof RepositoryException && e.getCause() instanceof IOException);
+	}
+	
+	/**
+	 * Apply operations one by one, to find the ones the store rejects.
+	 * Operations are applied in order: isolation stops at the first 
+	 * operation that could not be applied because the store is unreachable.
+	 * 
+	 * @param repo repository
+	 * @param ops operations
+	 * @return operations still to be applied, empty list when done
+	 */
+	private List<Op> isolate(Repository repo, List<Op> ops) {
+		for (int i = 0; i < ops.size(); i++) {
+			Op op = ops.get(i);
+			try {
+				commit(repo, Collections.singletonList(op));
+			} catch (RDF4JException e) {
+				if (isTransient(e)) {
+					return ops.subList(i, ops.size());
+				}
+				fail(op, e.getMessage());
+			}
+		}
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Apply operations, retrying as long as the store is unavailable.
+	 * Operations rejected by the store are marked as failed.
+	 * 
+	 * @param batch operations
+	 * @throws InterruptedException when the journal is stopped
+	 */
+	private void apply(List<Op> batch) throws InterruptedException {
+		batch = batch.stream().filter(op -> op.type != FAILURE).collect(Collectors.toList());
+		if (batch.isEmpty()) {
+			return;
+		}
+		String name = batch.get(0).name;
+		Repository repo = repos.get(name);
+		if (repo == null) {
+			batch.forEach(op -> fail(op, "Unknown repository " + name));
+			return;
+		}
+		List<Op> ops = new ArrayList<>(batch.size());
+		for (Op op: batch) {
+			if (decode(op)) {
+				ops.add(op);
+			}
+		}
+		long delay = MIN_DELAY;
+		while (running && !ops.isEmpty()) {
+			try {
+				commit(repo, ops);
+				return;
+			} catch (RDF4JException e) {
+				if (! isTransient(e)) {
+					ops = isolate(repo, ops);
+					if (ops.isEmpty()) {
+						return;
+					}
+				}
+				LOG.warn("Could not apply {} operations on {}, retry in {} ms: {}", 
+							ops.size(), name, delay, e.getMessage());
+			}
+			synchronized(this) {
+				wait(delay);
+			}
+			delay = Math.min(delay * 2, MAX_DELAY);
+		}
+		if (! running) {
+			throw new InterruptedException("Journal stopped");
+		}
+	}
+	
+	/**
+	 * Store the offset of the last applied operation
+	 * 
+	 * @param offset offset
+	 * @throws IOException 
+	 */
+	private void checkpoint(long offset) throws IOException {
+		Path tmp = dir.resolve(CHECKPOINT + TMP);
+		Files.write(tmp, Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+		Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+											StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Replace the journal file by a new one, starting at the first operation 
+	 * not yet applied. 
+	 * Only done when at least half of the file can be dropped, 
+	 * so copying the remaining operations does not block appends for long.
+	 * 
+	 * @throws IOException 
+	 */
+	private void rotate() throws IOException {
+		synchronized(syncLock) {
+			synchronized(appendLock) {
+				long size = written - base;
+				if (size < maxSize || applied - base < size / 2) {
+					return;
+				}
+				Path next = dir.resolve(PREFIX + applied + SUFFIX);
+				Path tmp = dir.resolve(PREFIX + applied + SUFFIX + TMP);
+				FileChannel c = open(tmp);
+				c.truncate(0);
+				long pos = applied - base;
+				long end = written - base;
+				while (pos < end) {
+					pos += ch.transferTo(pos, end - pos, c);
+				}
+				c.force(true);
+				c.close();
+				Files.move(tmp, next, StandardCopyOption.ATOMIC_MOVE);
+				
+				ch.close();
+				Files.delete(file);
+				ch = open(next);
+				file = next;
+				base = applied;
+				synced = written;
+			}
+		}
+		LOG.info("Journal rotated at offset {}", base);
+	}
+	
+	/**
+	 * Apply operations until stopped
+	 */
+	private void applyLoop() {
+		while (running) {
+			try {
+				synchronized(this) {
+					while (running && applied >= synced) {
+						wait(MAX_DELAY);
+					}
+				}
+				if (! running) {
+					break;
+				}
+				List<Op> ops = read(applied, synced);
+				apply(ops);
+				applied = ops.get(ops.size() - 1).next;
+				checkpoint(applied);
+				rotate();
+			} catch (InterruptedException ie) {
+				break;
+			} catch (IOException ioe) {
+				LOG.error("Journal error", ioe);
+				try {
+					synchronized(this) {
+						wait(MAX_DELAY);
+					}
+				} catch (InterruptedException ie) {
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Open journal file
+	 * 
+	 * @param p path
+	 * @return channel
+	 * @throws IOException 
+	 */
+	private static FileChannel open(Path p) throws IOException {
+		return FileChannel.open(p, StandardOpenOption.CREATE, 
+								StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+	
+	/**
+	 * Get the offset of the first operation in a journal file
+	 * 
+	 * @param p path
+	 * @return offset
+	 */
+	private static long baseOf(Path p) {
+		String s = p.getFileName().toString();
+		return Long.parseLong(s.substring(PREFIX.length(), s.length() - SUFFIX.length()));
+	}
+	
+	@Override
+	public void start() throws IOException {
+		Files.createDirectories(dir);
+		Path cp = dir.resolve(CHECKPOINT);
+		long checkpoint = Files.exists(cp)
+			? Long.parseLong(new String(Files.readAllBytes(cp), StandardCharsets.US_ASCII).trim())
+			: 0;
+		
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+			ds.forEach(files::add);
+		}
+		files.sort(Comparator.comparingLong(Journal::baseOf));
+		// the newest file contains all operations not yet applied
+		for (int i = 0; i < files.size() - 1; i++) {
+			Files.delete(files.get(i));
+		}
+		if (files.isEmpty()) {
+			base = checkpoint;
+			file = dir.resolve(PREFIX + base + SUFFIX);
+		} else {
+			file = files.get(files.size() - 1);
+			base = baseOf(file);
+		}
+		ch = open(file);
+		applied = Math.max(checkpoint, base);
+		known = base;
+		
+		// failures of operations in this file
+		long pos = base;
+		Op op;
+		while (pos < applied && (op = readOp(ch, pos - base, pos)) != null) {
+			if (op.type == FAILURE) {
+				loadFailure(op);
+			}
+			pos = op.next;
+		}
+		
+		// discard a partially written operation at the end
+		pos = applied;
+		while ((op = readOp(ch, pos - base, pos)) != null) {
+			if (op.type == FAILURE) {
+				loadFailure(op);
+			}
+			pos = op.next;
+		}
+		if (pos - base < ch.size()) {
+			LOG.warn("Discarding {} bytes of incomplete journal", ch.size() - (pos - base));
+			ch.truncate(pos - base);
+			ch.force(true);
+		}
+		written = pos;
+		synced = pos;
+		if (written > applied) {
+			LOG.info("Replaying {} bytes of journal", written - applied);
+		}
+		
+		running = true;
+		applier = new Thread(this::applyLoop, "journal-applier");
+		applier.start();
+	}
+	
+	@Override
+	public void stop() throws Exception {
+		running = false;
+		synchronized(this) {
+			notifyAll();
+		}
+		applier.join(STOP_WAIT);
+		synchronized(appendLock) {
+			ch.close();
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg journal configuration
+	 */
+	public Journal(JournalConfig cfg) {
+		this.dir = Paths.get(cfg.getDir());
+		this.batchSize = cfg.getBatchSize();
+		this.maxSize = cfg.getMaxSize() * 1024 * 1024;
+	}
+}
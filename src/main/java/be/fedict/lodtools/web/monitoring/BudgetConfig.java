@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Maximum size of a query result for one class of endpoints
+ * 
+ * @author Bart.Hanssens
+ */
+public class BudgetConfig {
+	@Min(1)
+	private int triples;
+	@Min(1)
+	private long bytes;
+
+	@JsonProperty
+	public int getTriples() {
+		return triples;
+	}
+
+	@JsonProperty
+	public void setTriples(int triples) {
+		this.triples = triples;
+	}
+
+	/**
+	 * Get the maximum size, estimated from the length of the values
+	 * 
+	 * @return number of bytes
+	 */
+	@JsonProperty
+	public long getBytes() {
+		return bytes;
+	}
+
+	@JsonProperty
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+	
+	public BudgetConfig() {
+		this(10000, 8 * 1024 * 1024);
+	}
+	
+	public BudgetConfig(int triples, long bytes) {
+		this.triples = triples;
+		this.bytes = bytes;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Histogram of the duration of each garbage collection, per collector, 
+ * e.g. jvm.gc.PS-Scavenge.pause (milliseconds), next to the total count and time.
+ * 
+ * For concurrent collectors, the duration also includes the concurrent phases.
+ * 
+ * @author Bart.Hanssens
+ */
+public class GcPauseMetrics implements Managed {
+	private final MetricRegistry metrics;
+	private final Map<NotificationEmitter,NotificationListener> listeners = new HashMap<>();
+	
+	@Override
+	public void start() throws Exception {
+		for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (!(gc instanceof NotificationEmitter)) {
+				continue;
+			}
+			Histogram pauses = metrics.histogram(
+				MetricRegistry.name("jvm.gc", gc.getName().replaceAll("\\s+", "-"), "pause"));
+			NotificationListener l = (n, handback) -> {
+				if (n.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+					GarbageCollectionNotificationInfo info = 
+						GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData());
+					pauses.update(info.getGcInfo().getDuration());
+				}
+			};
+			((NotificationEmitter) gc).addNotificationListener(l, null, null);
+			listeners.put((NotificationEmitter) gc, l);
+		}
+	}
+
+	@Override
+	public void stop() throws Exception {
+		for (Map.Entry<NotificationEmitter,NotificationListener> e: listeners.entrySet()) {
+			try {
+				e.getKey().removeNotificationListener(e.getValue());
+			} catch (ListenerNotFoundException lnfe) {
+				//
+			}
+		}
+		listeners.clear();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param metrics metric registry
+	 */
+	public GcPauseMetrics(MetricRegistry metrics) {
+		this.metrics = metrics;
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import be.fedict.lodtools.web.resources.EndpointClass;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpConnection;
+
+import org.eclipse.rdf4j.query.QueryResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enforces time limits on running queries, and stops reading the results 
+ * when Jetty has noticed that the client went away.
+ * 
+ * The limit is passed to the store as maximum execution time, 
+ * the result is also closed on this side when the store does not stop in time.
+ * Closing the result aborts the HTTP request to the store.
+ * 
+ * @author Bart.Hanssens
+ */
+public class QueryMonitor implements Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(QueryMonitor.class);
+	
+	// extra time for the store to stop the query itself
+	private final static long GRACE = TimeUnit.SECONDS.toNanos(2);
+	private final static long CHECK = 500;
+	
+	private final int[] timeouts = new int[EndpointClass.values().length];
+	private final Set<Ticket> running = ConcurrentHashMap.newKeySet();
+	private final Meter timedOut;
+	private final Meter cancelled;
+	private ScheduledExecutorService exec;
+	
+	/**
+	 * Running query
+	 */
+	public class Ticket implements AutoCloseable {
+		private final QueryResult<?> res;
+		private final long deadline;
+		private final EndPoint endpoint;
+		private volatile boolean stopped = false;
+		
+		/**
+		 * Check if the query was stopped by the monitor
+		 * 
+		 * @return true if stopped
+		 */
+		public boolean isStopped() {
+			return stopped;
+		}
+		
+		/**
+		 * Stop reading the results
+		 * 
+		 * @param meter meter to update
+		 */
+		private void stop(Meter meter) {
+			if (! running.remove(this)) {
+				return;
+			}
+			stopped = true;
+			meter.mark();
+			try {
+				res.close();
+			} catch (RuntimeException e) {
+				LOG.debug("Error closing query result", e);
+			}
+		}
+		
+		@Override
+		public void close() {
+			running.remove(this);
+		}
+		
+		private Ticket(QueryResult<?> res, long deadline, EndPoint endpoint) {
+			this.res = res;
+			this.deadline = deadline;
+			this.endpoint = endpoint;
+		}
+	}
+	
+	/**
+	 * Get maximum execution time
+	 * 
+	 * @param cl endpoint class
+	 * @return time in seconds, 0 for no limit
+	 */
+	public int getTimeout(EndpointClass cl) {
+		return timeouts[cl.ordinal()];
+	}
+	
+	/**
+	 * Start monitoring the results of a query.
+	 * Must be called on the thread handling the request.
+	 * 
+	 * @param res query result
+	 * @param cl endpoint class
+	 * @return ticket, to be closed when all results are read
+	 */
+	public Ticket watch(QueryResult<?> res, EndpointClass cl) {
+		return watch(res, cl, 0);
+	}
+	
+	/**
+	 * Start monitoring the results of a query, with a limit shorter than
+	 * the one of the endpoint class.
+	 * Can be called outside of a request.
+	 * 
+	 * @param res query result
+	 * @param cl endpoint class
+	 * @param limit time left in nanoseconds, 0 for the limit of the class
+	 * @return ticket, to be closed when all results are read
+	 */
+	public Ticket watch(QueryResult<?> res, EndpointClass cl, long limit) {
+		int timeout = timeouts[cl.ordinal()];
+		long now = System.nanoTime();
+		long deadline = (timeout > 0) 
+			? now + TimeUnit.SECONDS.toNanos(timeout) + GRACE
+			: Long.MAX_VALUE;
+		if (limit > 0 && (timeout == 0 || limit < deadline - now)) {
+			deadline = now + limit;
+		}
+		HttpConnection conn = HttpConnection.getCurrentConnection();
+		Ticket t = new Ticket(res, deadline, (conn != null) ? conn.getEndPoint() : null);
+		running.add(t);
+		return t;
+	}
+	
+	/**
+	 * Record a query stopped by the store because it took too long
+	 */
+	public void timedOut() {
+		timedOut.mark();
+	}
+	
+	/**
+	 * Stop queries running too long, or for clients that went away
+	 */
+	private void check() {
+		long now = System.nanoTime();
+		for (Ticket t: running) {
+			if (now > t.deadline) {
+				t.stop(timedOut);
+			} else if (t.endpoint != null 
+					&& (!t.endpoint.isOpen() || t.endpoint.isInputShutdown())) {
+				t.stop(cancelled);
+			}
+		}
+	}
+	
+	@Override
+	public void start() {
+		exec = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "query-monitor");
+			t.setDaemon(true);
+			return t;
+		});
+		exec.scheduleWithFixedDelay(this::check, CHECK, CHECK, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void stop() {
+		exec.shutdownNow();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg time limits
+	 * @param metrics metric registry
+	 */
+	public QueryMonitor(QueryTimeoutConfig cfg, MetricRegistry metrics) {
+		for (EndpointClass cl: EndpointClass.values()) {
+			timeouts[cl.ordinal()] = cfg.getTimeout(cl);
+		}
+		this.timedOut = metrics.meter(MetricRegistry.name(QueryMonitor.class, "timed-out"));
+		this.cancelled = metrics.meter(MetricRegistry.name(QueryMonitor.class, "cancelled"));
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import be.fedict.lodtools.web.helpers.RDFMediaType;
+
+import com.codahale.metrics.MetricRegistry;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Function;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measure bytes allocated and CPU time per request, using the counters of the 
+ * request thread, including writing the response body.
+ * 
+ * Reported as histograms per resource method and response format, 
+ * e.g. OrgResource.getOrganisation.allocated.json-ld (bytes) and
+ * OrgResource.getOrganisation.cpu.json-ld (microseconds).
+ * Requests finishing on another thread (long-polling) are not measured.
+ * 
+ * @author Bart.Hanssens
+ */
+public class ResourceCostFeature implements DynamicFeature {
+	private final static Logger LOG = LoggerFactory.getLogger(ResourceCostFeature.class);
+	
+	private final static String THREAD = "lodtools.cost.thread";
+	private final static String ALLOCATED = "lodtools.cost.allocated";
+	private final static String CPU = "lodtools.cost.cpu";
+	
+	private final MetricRegistry metrics;
+	private final com.sun.management.ThreadMXBean threads;
+	private final boolean cpu;
+	
+	/**
+	 * Filter and interceptor for one resource method
+	 */
+	private class CostFilter implements ContainerRequestFilter, ContainerResponseFilter, 
+											WriterInterceptor {
+		private final String prefix;
+		
+		@Override
+		public void filter(ContainerRequestContext req) throws IOException {
+			long id = Thread.currentThread().getId();
+			req.setProperty(THREAD, id);
+			req.setProperty(ALLOCATED, threads.getThreadAllocatedBytes(id));
+			if (cpu) {
+				req.setProperty(CPU, threads.getCurrentThreadCpuTime());
+			}
+		}
+
+		@Override
+		public void filter(ContainerRequestContext req, ContainerResponseContext resp) 
+																throws IOException {
+			// otherwise measured after writing the body
+			if (! resp.hasEntity()) {
+				record(req::getProperty, null);
+			}
+		}
+
+		@Override
+		public void aroundWriteTo(WriterInterceptorContext ctx) 
+										throws IOException, WebApplicationException {
+			try {
+				ctx.proceed();
+			} finally {
+				record(ctx::getProperty, ctx.getMediaType());
+			}
+		}
+		
+		/**
+		 * Update the histograms, if still on the thread that started the request
+		 * 
+		 * @param props request properties
+		 * @param mt media type of the response, or null
+		 */
+		private void record(Function<String,Object> props, MediaType mt) {
+			Object id = props.apply(THREAD);
+			if (id == null || (long) id != Thread.currentThread().getId()) {
+				return;
+			}
+			String fmt = format(mt);
+			long allocated = threads.getThreadAllocatedBytes((long) id) - (long) props.apply(ALLOCATED);
+			metrics.histogram(MetricRegistry.name(prefix, "allocated", fmt)).update(allocated);
+			if (cpu) {
+				long nanos = threads.getCurrentThreadCpuTime() - (long) props.apply(CPU);
+				metrics.histogram(MetricRegistry.name(prefix, "cpu", fmt)).update(nanos / 1000);
+			}
+		}
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param prefix metric name prefix
+		 */
+		private CostFilter(String prefix) {
+			this.prefix = prefix;
+		}
+	}
+	
+	/**
+	 * Get short name of the response format, for use in metric names
+	 * 
+	 * @param mt media type or null
+	 * @return name
+	 */
+	private static String format(MediaType mt) {
+		if (mt == null) {
+			return "none";
+		}
+		MediaType base = new MediaType(mt.getType(), mt.getSubtype());
+		switch (base.toString()) {
+			case RDFMediaType.JSONLD: 
+			case RDFMediaType.NTRIPLES:
+			case RDFMediaType.TTL:
+			case RDFMediaType.BINARY: 
+				return RDFMediaType.getRDFFormat(base).getName().toLowerCase().replaceAll("[^a-z0-9]+", "-");
+			default:
+				return mt.getSubtype().replaceAll("[^a-zA-Z0-9]+", "-");
+		}
+	}
+	
+	@Override
+	public void configure(ResourceInfo ri, FeatureContext ctx) {
+		if (threads != null) {
+			ctx.register(new CostFilter(MetricRegistry.name(ri.getResourceClass().getSimpleName(), 
+												ri.getResourceMethod().getName())));
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param metrics metric registry
+	 */
+	public ResourceCostFeature(MetricRegistry metrics) {
+		this.metrics = metrics;
+		
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean 
+			&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			this.threads = (com.sun.management.ThreadMXBean) bean;
+			this.threads.setThreadAllocatedMemoryEnabled(true);
+			this.cpu = threads.isCurrentThreadCpuTimeSupported();
+			if (cpu) {
+				threads.setThreadCpuTimeEnabled(true);
+			}
+		} else {
+			LOG.warn("Allocation counters not supported by this JVM");
+			this.threads = null;
+			this.cpu = false;
+		}
+	}
+}
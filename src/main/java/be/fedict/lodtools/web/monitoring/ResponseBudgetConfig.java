@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import be.fedict.lodtools.web.resources.EndpointClass;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Maximum size of query results, per class of endpoints
+ * 
+ * @author Bart.Hanssens
+ */
+public class ResponseBudgetConfig {
+	@Valid @NotNull
+	private BudgetConfig lookup = new BudgetConfig(10000, 8L * 1024 * 1024);
+	@Valid @NotNull
+	private BudgetConfig search = new BudgetConfig(10000, 8L * 1024 * 1024);
+	@Valid @NotNull
+	private BudgetConfig filter = new BudgetConfig(50000, 32L * 1024 * 1024);
+	@Valid @NotNull
+	private BudgetConfig bulk = new BudgetConfig(200000, 128L * 1024 * 1024);
+
+	@JsonProperty
+	public BudgetConfig getLookup() {
+		return lookup;
+	}
+
+	@JsonProperty
+	public void setLookup(BudgetConfig lookup) {
+		this.lookup = lookup;
+	}
+
+	@JsonProperty
+	public BudgetConfig getSearch() {
+		return search;
+	}
+
+	@JsonProperty
+	public void setSearch(BudgetConfig search) {
+		this.search = search;
+	}
+
+	@JsonProperty
+	public BudgetConfig getFilter() {
+		return filter;
+	}
+
+	@JsonProperty
+	public void setFilter(BudgetConfig filter) {
+		this.filter = filter;
+	}
+
+	@JsonProperty
+	public BudgetConfig getBulk() {
+		return bulk;
+	}
+
+	@JsonProperty
+	public void setBulk(BudgetConfig bulk) {
+		this.bulk = bulk;
+	}
+	
+	/**
+	 * Get the budget for a class of endpoints
+	 * 
+	 * @param cl endpoint class
+	 * @return budget
+	 */
+	public BudgetConfig getBudget(EndpointClass cl) {
+		switch(cl) {
+			case SEARCH: return search;
+			case FILTER: return filter;
+			case BULK: return bulk;
+			default: return lookup;
+		}
+	}
+}
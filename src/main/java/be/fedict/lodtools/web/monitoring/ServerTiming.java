@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import java.util.Locale;
+
+/**
+ * Per-request phase timings, reported in the W3C Server-Timing header.
+ * 
+ * Timings are only collected when the request is handled by the
+ * {@link ServerTimingFilter}, otherwise recording is a no-op.
+ * 
+ * @author Bart.Hanssens
+ */
+public class ServerTiming {
+	public final static String HEADER = "Server-Timing";
+	
+	/**
+	 * Request phases
+	 */
+	public enum Phase {
+		AUTH("auth"), CONN("conn"), QUERY("query"), MODEL("model"), SER("ser");
+		
+		private final String name;
+		
+		Phase(String name) {
+			this.name = name;
+		}
+	}
+	
+	private final static ThreadLocal<long[]> TIMINGS = new ThreadLocal<>();
+	
+	/**
+	 * Start collecting timings for the current request (thread)
+	 */
+	public static void start() {
+		TIMINGS.set(new long[Phase.values().length]);
+	}
+	
+	/**
+	 * Stop collecting timings for the current request (thread)
+	 * 
+	 * @return timings in nanoseconds, indexed by phase
+	 */
+	public static long[] stop() {
+		long[] timings = TIMINGS.get();
+		TIMINGS.remove();
+		return timings;
+	}
+	
+	/**
+	 * Get the timings collected so far
+	 * 
+	 * @return timings in nanoseconds or null when not collecting
+	 */
+	public static long[] current() {
+		return TIMINGS.get();
+	}
+	
+	/**
+	 * Add time elapsed since start to a phase
+	 * 
+	 * @param phase phase
+	 * @param start start time in nanoseconds
+	 */
+	public static void record(Phase phase, long start) {
+		add(phase, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Add duration to a phase
+	 * 
+	 * @param phase phase
+	 * @param nanos duration in nanoseconds
+	 */
+	public static void add(Phase phase, long nanos) {
+		long[] timings = TIMINGS.get();
+		if (timings != null) {
+			timings[phase.ordinal()] += nanos;
+		}
+	}
+	
+	/**
+	 * Format timings as Server-Timing header value
+	 * 
+	 * @param timings timings in nanoseconds
+	 * @param total total time in nanoseconds
+	 * @return header value
+	 */
+	public static String format(long[] timings, long total) {
+		StringBuilder builder = new StringBuilder();
+		for (Phase p: Phase.values()) {
+			long t = timings[p.ordinal()];
+			if (t > 0) {
+				builder.append(p.name).append(";dur=").append(millis(t)).append(", ");
+			}
+		}
+		return builder.append("total;dur=").append(millis(total)).toString();
+	}
+	
+	/**
+	 * Nanoseconds to milliseconds with microsecond precision
+	 * 
+	 * @param nanos
+	 * @return string
+	 */
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+	}
+}
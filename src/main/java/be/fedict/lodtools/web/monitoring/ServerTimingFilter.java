@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collect phase timings per request, add them as Server-Timing header 
+ * and log them.
+ * 
+ * The header is added just before the response body is written, so it
+ * cannot contain the serialization time: this is only logged.
+ * 
+ * @author Bart.Hanssens
+ */
+public class ServerTimingFilter implements Filter {
+	private final static Logger LOG = LoggerFactory.getLogger(ServerTimingFilter.class);
+	
+	/**
+	 * Response wrapper adding the header before the response gets committed
+	 */
+	private static class TimingResponse extends HttpServletResponseWrapper {
+		private final long start;
+		private boolean added = false;
+		
+		/**
+		 * Add timing header, if not already added
+		 */
+		protected void addTiming() {
+			if (!added && !isCommitted()) {
+				long[] timings = ServerTiming.current();
+				if (timings != null) {
+					setHeader(ServerTiming.HEADER, 
+						ServerTiming.format(timings, System.nanoTime() - start));
+				}
+				added = true;
+			}
+		}
+		
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			addTiming();
+			return super.getOutputStream();
+		}
+		
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			addTiming();
+			return super.getWriter();
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			addTiming();
+			super.flushBuffer();
+		}
+
+		/**
+		 * Constructor
+		 * 
+		 * @param resp servlet response
+		 * @param start start time in nanoseconds
+		 */
+		public TimingResponse(HttpServletResponse resp, long start) {
+			super(resp);
+			this.start = start;
+		}
+	}
+	
+	@Override
+	public void init(FilterConfig fc) throws ServletException {
+		// nothing to do
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) 
+									throws IOException, ServletException {
+		if (!(req instanceof HttpServletRequest)) {
+			chain.doFilter(req, res);
+			return;
+		}
+		HttpServletRequest hreq = (HttpServletRequest) req;
+		long start = System.nanoTime();
+		
+		TimingResponse resp = new TimingResponse((HttpServletResponse) res, start);
+		ServerTiming.start();
+		try {
+			chain.doFilter(req, resp);
+			resp.addTiming();
+		} finally {
+			long[] timings = ServerTiming.stop();
+			LOG.info("{} {} {} {}", hreq.getMethod(), hreq.getRequestURI(), resp.getStatus(),
+				ServerTiming.format(timings, System.nanoTime() - start));
+		}
+	}
+
+	@Override
+	public void destroy() {
+		// nothing to do
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.monitoring;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.eclipse.rdf4j.model.Value;
+
+/**
+ * Records queries slower than a threshold in a bounded ring buffer.
+ * 
+ * Queries below the threshold only cost a comparison.
+ * 
+ * @author Bart.Hanssens
+ */
+public class SlowQueryLog {
+	private final static Pattern FROM = Pattern.compile("\\s*FROM <([^>]*)>\\s*");
+	
+	private final long threshold;
+	private final int slowest;
+	private final int maxKeys;
+	private final AtomicReferenceArray<Entry> ring;
+	private final AtomicLong next = new AtomicLong();
+	private final List<Entry> top = new ArrayList<>();
+	private final Map<String,LongAdder> counts = new ConcurrentHashMap<>();
+	
+	/**
+	 * Slow query
+	 */
+	public static class Entry {
+		private final long time;
+		private final String source;
+		private final String template;
+		private final String graph;
+		private final String bindings;
+		private final long conn;
+		private final long eval;
+		private final long model;
+		private final long total;
+		private final long size;
+		
+		public long getTime() {
+			return time;
+		}
+		
+		public String getSource() {
+			return source;
+		}
+		
+		public String getTemplate() {
+			return template;
+		}
+		
+		public String getGraph() {
+			return graph;
+		}
+		
+		public String getBindings() {
+			return bindings;
+		}
+		
+		public long getTotal() {
+			return total;
+		}
+		
+		public long getSize() {
+			return size;
+		}
+		
+		/**
+		 * Template, bindings and graph, identifying a concrete query
+		 * 
+		 * @return string
+		 */
+		public String getKey() {
+			return source + " " + template + " " + bindings + " " + graph;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%tFT%<tT total=%dms conn=%dms eval=%dms model=%dms size=%d %s %s graph=%s %s", 
+				time, ms(total), ms(conn), ms(eval), ms(model), size, source, bindings, graph, template);
+		}
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param source source of the query (e.g. resource class)
+		 * @param qry query string
+		 * @param bindings bindings
+		 * @param conn time to get a connection (nanoseconds)
+		 * @param eval evaluation time (nanoseconds)
+		 * @param model time to build the result model (nanoseconds)
+		 * @param size number of results, or -1 for updates
+		 */
+		Entry(String source, String qry, Map<String,Value> bindings, 
+									long conn, long eval, long model, long size) {
+			this.time = System.currentTimeMillis();
+			this.source = source;
+			Matcher m = FROM.matcher(qry);
+			this.graph = m.find() ? m.group(1) : "";
+			this.template = m.replaceAll(" ");
+			this.bindings = bindings.entrySet().stream()
+								.map(e -> e.getKey() + "=" + e.getValue())
+								.sorted()
+								.collect(Collectors.joining(", ", "{", "}"));
+			this.conn = conn;
+			this.eval = eval;
+			this.model = model;
+			this.total = conn + eval + model;
+			this.size = size;
+		}
+	}
+	
+	/**
+	 * Nanoseconds to milliseconds
+	 * 
+	 * @param nanos
+	 * @return milliseconds
+	 */
+	private static long ms(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+	
+	/**
+	 * Record query if it is slower than the threshold
+	 * 
+	 * @param source source of the query
+	 * @param qry query string
+	 * @param bindings bindings
+	 * @param conn time to get a connection (nanoseconds)
+	 * @param eval evaluation time (nanoseconds)
+	 * @param model time to build the result model (nanoseconds)
+	 * @param size number of results, or -1 for updates
+	 */
+	public void record(String source, String qry, Map<String,Value> bindings, 
+									long conn, long eval, long model, long size) {
+		if (conn + eval + model < threshold) {
+			return;
+		}
+		Entry e = new Entry(source, qry, bindings, conn, eval, model, size);
+		ring.set((int) (next.getAndIncrement() % ring.length()), e);
+		
+		// only count a limited number of distinct queries
+		LongAdder count = counts.get(e.getKey());
+		if (count == null && counts.size() < maxKeys) {
+			count = counts.computeIfAbsent(e.getKey(), k -> new LongAdder());
+		}
+		if (count != null) {
+			count.increment();
+		}
+		
+		synchronized(top) {
+			if (top.size() < slowest || e.total > top.get(top.size() - 1).total) {
+				top.add(e);
+				top.sort(Comparator.comparingLong(Entry::getTotal).reversed());
+				if (top.size() > slowest) {
+					top.remove(slowest);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get the slowest queries since startup
+	 * 
+	 * @param n maximum number of queries
+	 * @return list of slow queries
+	 */
+	public List<Entry> getSlowest(int n) {
+		synchronized(top) {
+			return new ArrayList<>(top.subList(0, Math.min(n, top.size())));
+		}
+	}
+	
+	/**
+	 * Get the most recent slow queries, most recent first
+	 * 
+	 * @return list of slow queries
+	 */
+	public List<Entry> getRecent() {
+		List<Entry> l = new ArrayList<>();
+		long last = next.get();
+		for (long i = last - 1; i >= 0 && i >= last - ring.length(); i--) {
+			Entry e = ring.get((int) (i % ring.length()));
+			if (e != null) {
+				l.add(e);
+			}
+		}
+		return l;
+	}
+	
+	/**
+	 * Get the queries that were slow most frequently since startup
+	 * 
+	 * @param n maximum number of queries
+	 * @return map of concrete queries and counts 
+	 */
+	public List<Map.Entry<String,Long>> getMostFrequent(int n) {
+		return counts.entrySet().stream()
+					.map(e -> new SimpleEntry<>(e.getKey(), e.getValue().sum()))
+					.sorted(Map.Entry.<String,Long>comparingByValue().reversed())
+					.limit(n)
+					.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Get the threshold
+	 * 
+	 * @return threshold in milliseconds
+	 */
+	public long getThreshold() {
+		return ms(threshold);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param threshold threshold in milliseconds
+	 * @param size size of the ring buffer of recent slow queries
+	 */
+	public SlowQueryLog(long threshold, int size) {
+		this.threshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+		this.ring = new AtomicReferenceArray<>(size);
+		this.slowest = size;
+		this.maxKeys = size * 16;
+	}
+}
@@ -35,6 +35,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
 import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
 import org.eclipse.rdf4j.repository.Repository;
 
 /**
@@ -43,7 +44,8 @@ import org.eclipse.rdf4j.repository.Repository;
  */
 
 @Path("/cpsv")
-@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+			RDFMediaType.BINARY, MediaType.TEXT_HTML})
 public class CpsvResource extends RdfResource {
 	public final static String PREFIX = "http://pubserv.belgif.be/";
 
@@ -55,6 +57,6 @@ public class CpsvResource extends RdfResource {
 	}
 	
 	public CpsvResource(Repository repo) {
-		super(repo);
+		super(repo, new SimpleNamespace("pubserv", PREFIX));
 	}
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.resources;
+
+import java.util.regex.Pattern;
+
+/**
+ * Classes of endpoints, based on the load they put on the triple store
+ * 
+ * @author Bart.Hanssens
+ */
+public enum EndpointClass {
+	LOOKUP, SEARCH, FILTER, BULK;
+	
+	private final static Pattern SEARCH_PATH = Pattern.compile(".*/_search/?");
+	private final static Pattern FILTER_PATH = Pattern.compile(".*/_filter/?|/proc/contract/?");
+	private final static Pattern BULK_PATH = Pattern.compile(".*/(_batch|_changes)/?");
+	
+	/**
+	 * Get the class of an endpoint
+	 * 
+	 * @param path request path
+	 * @return endpoint class
+	 */
+	public static EndpointClass of(String path) {
+		if (path.indexOf("/_") < 0 && !path.startsWith("/proc/")) {
+			return LOOKUP;
+		}
+		if (SEARCH_PATH.matcher(path).matches()) {
+			return SEARCH;
+		}
+		if (FILTER_PATH.matcher(path).matches()) {
+			return FILTER;
+		}
+		if (BULK_PATH.matcher(path).matches()) {
+			return BULK;
+		}
+		return LOOKUP;
+	}
+}
@@ -43,6 +43,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
 import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
 import org.eclipse.rdf4j.repository.Repository;
 
 /**
@@ -50,16 +51,18 @@ import org.eclipse.rdf4j.repository.Repository;
  * @author Bart.Hanssens
  */
 @Path("/fedict/fsb")
-@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+			RDFMediaType.BINARY, MediaType.TEXT_HTML})
 public class FsbResource extends RdfResource {
 	public final static String PREFIX = "http://pubserv.belgif.be/";
 	public final static String FAMILY = "http://www.w3.org/ns/dcat#Dataset";
+	public final static String DATASET = "http://www.w3.org/ns/dcat#dataset";
 
 	@GET
 	@Path("/catalog")
 	@ExceptionMetered
 	public Model getCatalog() {
-		return getById(PREFIX, "fedict/fsb", "catalog");
+		return getDescription(PREFIX + "fedict/fsb/catalog#id", DATASET);
 	}
 	
 	@GET
@@ -95,6 +98,6 @@ public class FsbResource extends RdfResource {
 	}
 */	
 	public FsbResource(Repository repo) {
-		super(repo);
+		super(repo, new SimpleNamespace("fsb", PREFIX + "fedict/fsb/"));
 	}
 }
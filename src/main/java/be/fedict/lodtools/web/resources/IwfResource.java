@@ -38,6 +38,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.eclipse.rdf4j.model.Model;
@@ -48,7 +49,8 @@ import org.eclipse.rdf4j.repository.Repository;
  * @author Bart.Hanssens
  */
 @Path("/fedict")
-@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+			RDFMediaType.BINARY, MediaType.TEXT_HTML})
 public class IwfResource extends RdfResource {
 	public final static String PREFIX = "http://form.belgif.be/iwf";
 
@@ -61,19 +63,18 @@ public class IwfResource extends RdfResource {
 	
 	@PermitAll
 	@PUT
-	@Consumes({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+	@Consumes({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+				RDFMediaType.BINARY})
 	@ExceptionMetered
 	public Response putIwfResource(Model m) {
-		putStatements(m);
-		return Response.ok().build();
+		return putStatements(m);
 	}
 	
 	@PermitAll
 	@DELETE
 	@ExceptionMetered
 	public Response deleteIwfResource(@QueryParam("url") String text) {
-		deleteStatements(text);
-		return Response.ok().build();
+		return deleteStatements(text);
 	}
 	
 	@GET
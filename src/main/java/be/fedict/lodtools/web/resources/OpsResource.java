@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.resources;
+
+import be.fedict.lodtools.web.helpers.JSONLDStreamWriter;
+import be.fedict.lodtools.web.journal.Journal;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+
+import java.io.IOException;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Status of updates accepted by the write-behind journal
+ * 
+ * @author Bart.Hanssens
+ */
+@Path(OpsResource.PATH)
+@Produces(MediaType.APPLICATION_JSON)
+public class OpsResource {
+	public final static String PATH = "/_ops";
+	
+	private final Journal journal;
+	
+	@GET
+	@Path("/{id: [0-9]+}")
+	@ExceptionMetered
+	public Response getStatus(@PathParam("id") long id) {
+		Journal.Status status = journal.getStatus(id);
+		if (status == null) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+		StringBuilder json = new StringBuilder(64);
+		json.append("{\"id\":").append(id)
+			.append(",\"status\":\"").append(status.name().toLowerCase()).append('"');
+		if (status == Journal.Status.FAILED) {
+			json.append(",\"error\":");
+			try {
+				JSONLDStreamWriter.quote(json, String.valueOf(journal.getError(id)));
+			} catch (IOException ioe) {
+				throw new WebApplicationException(ioe);
+			}
+		}
+		json.append('}');
+		
+		CacheControl cc = new CacheControl();
+		cc.setNoCache(status == Journal.Status.PENDING);
+		return Response.ok(json.toString()).cacheControl(cc).build();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param journal write-behind journal
+	 */
+	public OpsResource(Journal journal) {
+		this.journal = journal;
+	}
+}
@@ -34,8 +34,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
 
 import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
 import org.eclipse.rdf4j.repository.Repository;
 
 /**
@@ -44,15 +46,21 @@ import org.eclipse.rdf4j.repository.Repository;
  * @author Bart.Hanssens
  */
 @Path("/cbe")
-@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+			RDFMediaType.BINARY, MediaType.TEXT_HTML})
 public class OrgResource extends RdfResource {
 	public final static String PREFIX = "http://org.belgif.be/cbe/";
 	public final static String ACTIVITY = "http://www.w3.org/ns/regorg#orgActivity";
+	public final static String REGISTRATION = "http://www.w3.org/ns/regorg#registration";
+	public final static String SITE = "http://www.w3.org/ns/org#hasRegisteredSite";
 
 	@GET
 	@Path("/{type: org|registration|site}/{id}")
 	@ExceptionMetered
 	public Model getOrganisation(@PathParam("type") String type, @PathParam("id") String id) {
+		if (type.equals("org")) {
+			return getDescription(PREFIX + type + "/" + id + "#id", REGISTRATION, SITE);
+		}
 		return getById(PREFIX, type, id);
 	}
 	
@@ -71,6 +79,6 @@ public class OrgResource extends RdfResource {
 	}
 	
 	public OrgResource(Repository repo) {
-		super(repo);
+		super(repo, new SimpleNamespace("cbe", PREFIX));
 	}
 }
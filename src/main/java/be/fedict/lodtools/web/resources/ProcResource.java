@@ -40,9 +40,11 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.repository.Repository;
 
@@ -52,7 +54,8 @@ import org.eclipse.rdf4j.repository.Repository;
  * @author Bart.Hanssens
  */
 @Path("/proc")
-@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+			RDFMediaType.BINARY, MediaType.TEXT_HTML})
 public class ProcResource extends RdfResource {
 	public final static String PREFIX = "http://form.belgif.be/proc/";
 
@@ -72,11 +75,11 @@ public class ProcResource extends RdfResource {
 	
 	@PermitAll
 	@PUT
-	@Consumes({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+	@Consumes({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+				RDFMediaType.BINARY})
 	@ExceptionMetered
 	public Response putContract(Model m) {
-		putStatements(m);
-		return Response.ok().build();
+		return putStatements(m);
 	}
 	
 	@PermitAll
@@ -84,8 +87,7 @@ public class ProcResource extends RdfResource {
 	@Path("/contract/{id}")
 	@ExceptionMetered
 	public Response deleteContract(@PathParam("id") String id) {
-		deleteStatements(PREFIX + "/contract/" + id);
-		return Response.ok().build();
+		return deleteStatements(PREFIX + "/contract/" + id);
 	}
 	
 	@PermitAll
@@ -111,6 +113,6 @@ public class ProcResource extends RdfResource {
 	}
 */	
 	public ProcResource(Repository repo) {
-		super(repo);
+		super(repo, new SimpleNamespace("proc", PREFIX));
 	}
 }
@@ -25,18 +25,73 @@
  */
 package be.fedict.lodtools.web.resources;
 
+import be.fedict.lodtools.web.bloom.SubjectFilter;
+import be.fedict.lodtools.web.changes.ChangeLog;
+import be.fedict.lodtools.web.helpers.ArrayModel;
+import be.fedict.lodtools.web.helpers.JSONLDContext;
 import be.fedict.lodtools.web.helpers.RDFMediaType;
+import be.fedict.lodtools.web.helpers.Truncation;
+import be.fedict.lodtools.web.journal.Journal;
+import be.fedict.lodtools.web.monitoring.BudgetConfig;
+import be.fedict.lodtools.web.monitoring.QueryMonitor;
+import be.fedict.lodtools.web.monitoring.ResponseBudgetConfig;
+import be.fedict.lodtools.web.monitoring.ServerTiming;
+import be.fedict.lodtools.web.sitemap.Sitemap;
+import be.fedict.lodtools.web.stats.RepositoryStats;
+import be.fedict.lodtools.web.monitoring.ServerTiming.Phase;
+import be.fedict.lodtools.web.monitoring.SlowQueryLog;
+import be.fedict.lodtools.web.store.NewStatements;
+import be.fedict.lodtools.web.store.RepositoryUnavailableException;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
@@ -46,8 +101,10 @@ import org.eclipse.rdf4j.model.vocabulary.OWL;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 
 import org.eclipse.rdf4j.query.GraphQuery;
+import org.eclipse.rdf4j.query.GraphQueryResult;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
 import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.query.Update;
@@ -62,10 +119,42 @@ import org.eclipse.rdf4j.repository.RepositoryException;
  * @author Bart.Hanssens
  */
 
-@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL})
+@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+			RDFMediaType.BINARY, MediaType.TEXT_HTML})
 public abstract class RdfResource {
 	private final Repository repo;
 	private final ValueFactory fac;
+	private final Set<Namespace> namespaces;
+	private final String base;
+	private int batchSize = 100;
+	private int describeDepth = 1;
+	private SlowQueryLog slowLog;
+	private QueryMonitor monitor;
+	private ResponseBudgetConfig budgets;
+	private String alternative;
+	
+	@Context
+	private UriInfo uriInfo;
+	private final List<StoreListener> listeners = new CopyOnWriteArrayList<>();
+	private Journal journal;
+	private ChangeLog changes;
+	private RepositoryStats stats;
+	private SubjectFilter filter;
+	private Sitemap sitemap;
+	private String name;
+	
+	private final static Namespace[] NAMESPACES = 
+			{ DCTERMS.NS, FOAF.NS, OWL.NS, RDF.NS, SKOS.NS };
+	
+	// seconds
+	private final static int RETRY_AFTER = 10;
+	// estimated overhead of a statement, on top of the values
+	private final static int STMT_SIZE = 48;
+	
+	// one week, the context only changes when the namespaces do
+	private final static int CONTEXT_MAX_AGE = 7 * 24 * 3600;
+	// statistics and sitemaps are updated in the background, and not purged
+	private final static int UPDATED_MAX_AGE = 300;
 	
 	private final static String Q_IRI = 
 			"CONSTRUCT { ?s ?p ?o }"
@@ -79,12 +168,36 @@ public abstract class RdfResource {
 			+		"?s ?p ?o } "
 			+ "LIMIT 1000";
 	
+	private final static String Q_FTS_SCORED = 
+			"PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> "
+			+ "PREFIX luc: <" + SearchResource.LUCENE + "> "
+			+ "CONSTRUCT { ?s rdfs:label ?o . ?s luc:score ?score }  "
+			+ "WHERE { ?o luc:myIndex ?fts ; "
+			+		"luc:score ?score . "
+			+		"?s ?p ?o } "
+			+ "ORDER BY DESC(?score) "
+			+ "LIMIT %d";
+	
 	private final static String Q_FILTER =
 			"PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> "
 			+ "CONSTRUCT { ?s rdfs:label ?o } "
 			+ "WHERE { ?s rdfs:label ?o ."
 			+		" ?s ?filter ?val }";
 	
+	// blank nodes are followed up to two levels deep
+	private final static String Q_DESCRIBE = 
+			"CONSTRUCT { ?s ?p ?o . ?o ?p1 ?o1 . ?o1 ?p2 ?o2 }"
+			+ " WHERE { VALUES ?s { %s } ?s ?p ?o"
+			+		" OPTIONAL { FILTER(isBlank(?o)) ?o ?p1 ?o1"
+			+			" OPTIONAL { FILTER(isBlank(?o1)) ?o1 ?p2 ?o2 } } }";
+	
+	private final static String Q_BATCH = 
+			"CONSTRUCT { ?s ?p ?o }"
+			+ " WHERE { VALUES ?s { %s } ?s ?p ?o }";
+	
+	// characters not allowed in an IRI written between angle brackets
+	private final static Pattern IRI_UNSAFE = Pattern.compile("[\\s<>\"{}|^`\\\\]");
+	
 	private final static String INCR_INDEX = 
 			"PREFIX luc: <http://www.ontotext.com/owlim/lucene#> "
 			+ "INSERT DATA { luc:myIndex luc:updateIndex _:b1 . }";
@@ -109,14 +222,41 @@ public abstract class RdfResource {
 		return fac.createLiteral(lit);
 	}
 	
+	/**
+	 * Get a connection to the repository, 
+	 * or return 503 when the repository is not available yet
+	 * 
+	 * @return repository connection
+	 */
+	protected RepositoryConnection getConnection() {
+		long start = System.nanoTime();
+		try {
+			return this.repo.getConnection();
+		} catch (RepositoryUnavailableException e) {
+			throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+							.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER).build());
+		} finally {
+			ServerTiming.record(Phase.CONN, start);
+		}
+	}
+	
 	/**
 	 * Prepare and run a SPARQL update
 	 * @param upd update string
 	 */
 	protected void update(String upd) {
-		try (RepositoryConnection conn = this.repo.getConnection()) {
+		long start = System.nanoTime();
+		try (RepositoryConnection conn = getConnection()) {
+			long connected = System.nanoTime();
 			Update uq = conn.prepareUpdate(QueryLanguage.SPARQL, upd);
 			uq.execute();
+			long done = System.nanoTime();
+			
+			ServerTiming.add(Phase.QUERY, done - connected);
+			if (slowLog != null) {
+				slowLog.record(getClass().getSimpleName(), upd, Collections.emptyMap(), 
+								connected - start, done - connected, 0, -1);
+			}
 		} catch (RepositoryException|MalformedQueryException|QueryEvaluationException e) {
 			throw new WebApplicationException(e);
 		}
@@ -129,22 +269,178 @@ public abstract class RdfResource {
 	 * @return results in triple model
 	 */
 	protected Model query(String qry, Map<String,Value> bindings) {
-		try (RepositoryConnection conn = this.repo.getConnection()) {
+		return query(EndpointClass.LOOKUP, qry, bindings);
+	}
+	
+	/**
+	 * Prepare and run a SPARQL query, with the time limit of a class of endpoints
+	 * 
+	 * @param cl endpoint class
+	 * @param qry query string
+	 * @param bindings bindings (if any)
+	 * @return results in triple model
+	 */
+	protected Model query(EndpointClass cl, String qry, Map<String,Value> bindings) {
+		return query(cl, qry, bindings, getAlternative());
+	}
+	
+	/**
+	 * Prepare and run a SPARQL query, with the time limit of a class of endpoints.
+	 * Can be called outside of a request.
+	 * 
+	 * @param cl endpoint class
+	 * @param qry query string
+	 * @param bindings bindings (if any)
+	 * @param alt location of the complete data when truncated, or null
+	 * @return results in triple model
+	 */
+	protected Model query(EndpointClass cl, String qry, Map<String,Value> bindings, IRI alt) {
+		return query(cl, qry, bindings, alt, 0);
+	}
+	
+	/**
+	 * Prepare and run a SPARQL query, with a time limit shorter than the one
+	 * of the class of endpoints.
+	 * The limit is passed to the store, and the result is closed when the 
+	 * store does not stop in time, so the query is aborted.
+	 * Can be called outside of a request.
+	 * 
+	 * @param cl endpoint class
+	 * @param qry query string
+	 * @param bindings bindings (if any)
+	 * @param alt location of the complete data when truncated, or null
+	 * @param limit time limit in nanoseconds, 0 for the limit of the endpoint class
+	 * @return results in triple model
+	 */
+	protected Model query(EndpointClass cl, String qry, Map<String,Value> bindings, 
+															IRI alt, long limit) {
+		long start = System.nanoTime();
+		try (RepositoryConnection conn = getConnection()) {
+			return query(conn, System.nanoTime() - start, cl, qry, bindings, alt, limit,
+							(budgets != null) ? budgets.getBudget(cl) : null);
+		} catch (RepositoryException e) {
+			throw new WebApplicationException(e);
+		}
+	}
+	
+	/**
+	 * Prepare and run a SPARQL query on an open connection
+	 * 
+	 * @param conn repository connection
+	 * @param connTime time needed to get the connection, in nanoseconds
+	 * @param cl endpoint class
+	 * @param qry query string
+	 * @param bindings bindings (if any)
+	 * @param alt location of the complete data when truncated, or null
+	 * @param limit time limit in nanoseconds, 0 for the limit of the endpoint class
+	 * @param budget remaining size of the result, or null for no limit
+	 * @return results in triple model
+	 */
+	private Model query(RepositoryConnection conn, long connTime, EndpointClass cl,
+		String qry, Map<String,Value> bindings, IRI alt, long limit, BudgetConfig budget) {
+		QueryMonitor.Ticket ticket = null;
+		try {
+			long connected = System.nanoTime();
+			long end = connected - connTime + limit;
 			GraphQuery gq = conn.prepareGraphQuery(QueryLanguage.SPARQL, qry);
 			bindings.forEach((k,v) -> gq.setBinding(k, v));
+			int timeout = (monitor != null) ? monitor.getTimeout(cl) : 0;
+			if (limit > 0) {
+				// whole seconds, rounded up
+				int secs = (int) TimeUnit.NANOSECONDS.toSeconds(limit + TimeUnit.SECONDS.toNanos(1) - 1);
+				timeout = (timeout > 0) ? Math.min(timeout, secs) : secs;
+			}
+			if (monitor != null || limit > 0) {
+				gq.setMaxExecutionTime(timeout);
+			}
+			GraphQueryResult res = gq.evaluate();
+			long evaluated = System.nanoTime();
 			
-			Model m = QueryResults.asModel(gq.evaluate());
-			if (! m.isEmpty()) {
-				m.setNamespace(DCTERMS.PREFIX, DCTERMS.NAMESPACE);
-				m.setNamespace(FOAF.PREFIX, FOAF.NAMESPACE);
-				m.setNamespace(OWL.PREFIX, OWL.NAMESPACE);
-				m.setNamespace(RDF.PREFIX, RDF.NAMESPACE);
-				m.setNamespace(SKOS.PREFIX, SKOS.NAMESPACE);
+			if (monitor != null) {
+				ticket = monitor.watch(res, cl, (limit > 0) ? Math.max(1, end - evaluated) : 0);
+			}
+			Model m = collect(res, budget, alt);
+			long done = System.nanoTime();
+			
+			ServerTiming.add(Phase.QUERY, evaluated - connected);
+			ServerTiming.add(Phase.MODEL, done - evaluated);
+			if (slowLog != null) {
+				slowLog.record(getClass().getSimpleName(), qry, bindings, 
+					connTime, evaluated - connected, done - evaluated, m.size());
 			}
 			return m;
+		} catch (QueryInterruptedException qie) {
+			if (monitor != null) {
+				monitor.timedOut();
+			}
+			throw new WebApplicationException(qie, Response.Status.SERVICE_UNAVAILABLE);
 		} catch (RepositoryException|MalformedQueryException|QueryEvaluationException e) {
+			if (ticket != null && ticket.isStopped()) {
+				throw new WebApplicationException(e, Response.Status.SERVICE_UNAVAILABLE);
+			}
 			throw new WebApplicationException(e);
+		} finally {
+			if (ticket != null) {
+				ticket.close();
+			}
+		}
+	}
+	
+	/**
+	 * Get the location of the complete data, to be linked from truncated results.
+	 * Must be called on the thread handling the request.
+	 * 
+	 * @return IRI or null
+	 */
+	IRI getAlternative() {
+		return (budgets != null && alternative != null) 
+			? fac.createIRI(uriInfo.getBaseUri().resolve(alternative).toString()) 
+			: null;
+	}
+	
+	/**
+	 * Estimate the size of a statement, from the length of the values
+	 * 
+	 * @param st statement
+	 * @return number of bytes
+	 */
+	private static long size(Statement st) {
+		return st.getSubject().stringValue().length() 
+				+ st.getPredicate().stringValue().length()
+				+ st.getObject().stringValue().length() + STMT_SIZE;
+	}
+	
+	/**
+	 * Collect query results in a compact model, until the budget is exhausted.
+	 * The result is closed when truncated, so the store stops sending results.
+	 * 
+	 * @param res query result
+	 * @param budget maximum number of triples and bytes, or null for no limit
+	 * @param alt location of the complete data, or null
+	 * @return model, marked as truncated when the budget was exhausted
+	 */
+	private Model collect(GraphQueryResult res, BudgetConfig budget, IRI alt) {
+		Model m = new ArrayModel(namespaces);
+		long bytes = 0;
+		while (res.hasNext()) {
+			Statement st = res.next();
+			if (budget == null) {
+				m.add(st);
+				continue;
+			}
+			bytes += size(st);
+			if (m.size() >= budget.getTriples() || bytes > budget.getBytes()) {
+				try {
+					res.close();
+				} catch (QueryEvaluationException e) {
+					// results so far are still usable
+				}
+				Truncation.mark(m, alt);
+				break;
+			}
+			m.add(st);
 		}
+		return m;
 	}
 	
 	/**
@@ -170,7 +466,7 @@ public abstract class RdfResource {
 		if (from != null) {
 			qry = qry.replaceFirst("WHERE", "FROM <" + from + "> WHERE");
 		}
-		return query(qry, Collections.EMPTY_MAP);
+		return query(EndpointClass.BULK, qry, Collections.EMPTY_MAP);
 	}
 	
 	/**
@@ -180,9 +476,359 @@ public abstract class RdfResource {
 	 * @return RDF model 
 	 */
 	protected Model getById(String url) {
+		checkKnown(url);
 		Map<String,Value> map = new HashMap();
 		map.put("s", asURI(url));
-		return query(Q_IRI, map);		
+		return checkFound(query(Q_IRI, map));
+	}
+	
+	/**
+	 * Return not found immediately when the subject is certainly not in the store
+	 * 
+	 * @param url subject
+	 */
+	private void checkKnown(String url) {
+		if (filter != null && !filter.mightContain(url)) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+	}
+	
+	/**
+	 * Count empty results for a subject that passed the filter
+	 * 
+	 * @param m result of a lookup
+	 * @return same model
+	 */
+	private Model checkFound(Model m) {
+		if (filter != null && m.isEmpty()) {
+			filter.falsePositive();
+		}
+		return m;
+	}
+	
+	/**
+	 * Check if an IRI can safely be inserted in a query between angle brackets
+	 * 
+	 * @param iri IRI
+	 * @return true if safe
+	 */
+	private static boolean isSafe(String iri) {
+		return ! IRI_UNSAFE.matcher(iri).find();
+	}
+	
+	/**
+	 * Get IRIs as content of a VALUES block.
+	 * The IRIs must have been checked with {@link #isSafe(String)}.
+	 * 
+	 * @param iris IRIs
+	 * @return string
+	 */
+	private static String values(Collection<IRI> iris) {
+		StringBuilder values = new StringBuilder();
+		for (IRI iri: iris) {
+			values.append('<').append(iri.stringValue()).append("> ");
+		}
+		return values.toString();
+	}
+	
+	/**
+	 * Get description of a subject, including blank nodes, and following
+	 * the given predicates up to the configured depth.
+	 * 
+	 * Each level of linked subjects is fetched with one query, 
+	 * using the same connection.
+	 * The levels share one result budget: each query only gets what is left
+	 * after the previous levels.
+	 * 
+	 * @param url subject
+	 * @param follow URIs of the predicates to follow
+	 * @return RDF model 
+	 */
+	protected Model getDescription(String url, String... follow) {
+		// the IRI is inserted in the query text, not bound
+		if (! isSafe(url)) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+		checkKnown(url);
+		Set<IRI> visited = new HashSet<>();
+		Set<IRI> frontier = Collections.singleton(asURI(url));
+		Model m = new ArrayModel(namespaces);
+		
+		IRI alt = getAlternative();
+		BudgetConfig budget = (budgets != null) ? budgets.getBudget(EndpointClass.LOOKUP) : null;
+		int triples = (budget != null) ? budget.getTriples() : 0;
+		long bytes = (budget != null) ? budget.getBytes() : 0;
+		long start = System.nanoTime();
+		try (RepositoryConnection conn = getConnection()) {
+			long connTime = System.nanoTime() - start;
+			for (int depth = 0; ! frontier.isEmpty(); depth++) {
+				visited.addAll(frontier);
+				BudgetConfig left = (budget != null) ? new BudgetConfig(triples, bytes) : null;
+				Model res = query(conn, connTime, EndpointClass.LOOKUP, 
+					String.format(Q_DESCRIBE, values(frontier)), Collections.emptyMap(), alt, 0, left);
+				connTime = 0;
+				// markers of a level are replaced by one for the whole response
+				for (Statement st: res) {
+					if (! st.getSubject().equals(Truncation.MARKER)) {
+						m.add(st);
+						triples--;
+						bytes -= size(st);
+					}
+				}
+				if (Truncation.isTruncated(res)) {
+					Truncation.mark(m, alt);
+					break;
+				}
+				if (depth >= describeDepth || m.isEmpty()) {
+					break;
+				}
+				
+				Set<IRI> next = new HashSet<>();
+				for (String pred: follow) {
+					for (Value obj: res.filter(null, asURI(pred), null).objects()) {
+						if (obj instanceof IRI && !visited.contains(obj) && next.size() < batchSize
+								&& isSafe(obj.stringValue())) {
+							next.add((IRI) obj);
+						}
+					}
+				}
+				frontier = next;
+			}
+		} catch (RepositoryException e) {
+			throw new WebApplicationException(e);
+		}
+		return checkFound(m);
+	}
+	
+	/**
+	 * Get subject IRI for an item of a batch request:
+	 * either a full IRI, or type/id relative to the dataset namespace
+	 * 
+	 * @param item full IRI or type/id
+	 * @return IRI
+	 */
+	private IRI asBatchIRI(String item) {
+		String iri = item.contains("://") ? item : base + item + "#id";
+		if ((base == null && !item.contains("://")) || !isSafe(iri)) {
+			throw new WebApplicationException(Response.Status.BAD_REQUEST);
+		}
+		return asURI(iri);
+	}
+	
+	/**
+	 * Get multiple subjects at once, using a single query
+	 * 
+	 * @param items list of full IRIs or type/id pairs
+	 * @param group order the statements by subject, in the order of the request
+	 * @return RDF model
+	 */
+	protected Model getBatch(List<String> items, boolean group) {
+		if (items == null || items.isEmpty() || items.size() > batchSize) {
+			throw new WebApplicationException(Response.Status.BAD_REQUEST);
+		}
+		List<IRI> subjs = items.stream().map(this::asBatchIRI).distinct()
+														.collect(Collectors.toList());
+		Model m = query(EndpointClass.BULK, String.format(Q_BATCH, values(subjs)), 
+														Collections.emptyMap());
+		if (! group) {
+			return m;
+		}
+		Model grouped = new ArrayModel(m.getNamespaces(), m.size());
+		for (IRI subj: subjs) {
+			grouped.addAll(m.filter(subj, null, null));
+		}
+		if (Truncation.isTruncated(m)) {
+			grouped.addAll(m.filter(Truncation.MARKER, null, null));
+		}
+		return grouped;
+	}
+	
+	/**
+	 * Get multiple subjects at once
+	 * 
+	 * @param items list of full IRIs or type/id pairs
+	 * @param group group statements by subject
+	 * @return RDF model
+	 */
+	@GET
+	@Path("/_batch")
+	@ExceptionMetered
+	public Model batch(@QueryParam("s") List<String> items, @QueryParam("group") boolean group) {
+		return getBatch(items, group);
+	}
+	
+	/**
+	 * Get multiple subjects at once, for lists too long for a query string
+	 * 
+	 * @param items list of full IRIs or type/id pairs
+	 * @param group group statements by subject
+	 * @return RDF model
+	 */
+	@POST
+	@Path("/_batch")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	@ExceptionMetered
+	public Model batchForm(@FormParam("s") List<String> items, @FormParam("group") boolean group) {
+		return getBatch(items, group);
+	}
+	
+	/**
+	 * Get a page of changed subjects
+	 * 
+	 * @param since sequence number of the last change already seen
+	 * @param limit maximum number of changes
+	 * @return response
+	 */
+	private Response getChangePage(long since, int limit) {
+		try {
+			ChangeLog.Page page = changes.getPage(since, limit);
+			ResponseBuilder rb = Response.ok(page.toJSON());
+			if (page.hasMore()) {
+				rb.link("?since=" + page.getLast() + "&limit=" + limit, "next");
+			}
+			return rb.cacheControl(CacheControl.valueOf("no-cache")).build();
+		} catch (IOException ioe) {
+			throw new WebApplicationException(ioe);
+		}
+	}
+	
+	/**
+	 * Get the subjects changed after a sequence number.
+	 * With wait, the request is held until there are changes or the maximum 
+	 * wait time has passed.
+	 * 
+	 * @param since sequence number of the last change already seen
+	 * @param limit maximum number of changes
+	 * @param wait wait for changes
+	 * @param resp asynchronous response
+	 */
+	@GET
+	@Path("/_changes")
+	@Produces(MediaType.APPLICATION_JSON)
+	@ExceptionMetered
+	public void getChanges(@QueryParam("since") @DefaultValue("0") long since,
+							@QueryParam("limit") @DefaultValue("0") int limit,
+							@QueryParam("wait") boolean wait,
+							@Suspended AsyncResponse resp) {
+		if (changes == null) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+		// client is ahead, e.g. after the log was reset, or behind the oldest
+		// change still in the log: it should reload
+		if (since < changes.getFirst() - 1 || since > changes.getLast()) {
+			throw new WebApplicationException(Response.Status.GONE);
+		}
+		int max = (limit > 0) ? Math.min(limit, changes.getPageSize()) 
+								: changes.getPageSize();
+		if (! wait || changes.getLast() > since) {
+			resp.resume(getChangePage(since, max));
+			return;
+		}
+		// may run on the thread writing the change
+		Runnable task = () -> {
+			try {
+				resp.resume(getChangePage(since, max));
+			} catch (WebApplicationException e) {
+				resp.resume(e);
+			}
+		};
+		resp.setTimeout(changes.getMaxWait(), TimeUnit.SECONDS);
+		resp.setTimeoutHandler(r -> {
+			changes.cancel(task);
+			task.run();
+		});
+		changes.await(since, task);
+	}
+	
+	/**
+	 * Get statistics of the dataset and its named graphs
+	 * 
+	 * @return VoID description
+	 */
+	@GET
+	@Path("/_stats")
+	@ExceptionMetered
+	public Response getStats() {
+		if (stats == null) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+		if (stats.getCounted() == 0) {
+			throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+							.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER).build());
+		}
+		Model m = stats.toVoID(fac.createIRI(uriInfo.getAbsolutePath() + "#dataset"));
+		namespaces.forEach(m::setNamespace);
+		return Response.ok(m).cacheControl(updatedCacheControl()).build();
+	}
+	
+	/**
+	 * Cache control for responses that are updated in the background
+	 * 
+	 * @return cache control
+	 */
+	private static CacheControl updatedCacheControl() {
+		CacheControl cc = new CacheControl();
+		cc.setNoTransform(false);
+		cc.setMaxAge(UPDATED_MAX_AGE);
+		return cc;
+	}
+	
+	/**
+	 * Get pages of the sitemap, or return an error when not available
+	 * 
+	 * @return list of pages
+	 */
+	private List<Sitemap.Page> getSitemapPages() {
+		if (sitemap == null) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+		List<Sitemap.Page> pages = sitemap.getPages();
+		if (pages == null) {
+			throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+							.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER).build());
+		}
+		return pages;
+	}
+	
+	/**
+	 * Get sitemap index, listing the sitemaps and when they were last modified
+	 * 
+	 * @return XML sitemap index
+	 */
+	@GET
+	@Path("/_sitemap.xml")
+	@Produces(MediaType.APPLICATION_XML)
+	@ExceptionMetered
+	public Response getSitemapIndex() {
+		List<Sitemap.Page> pages = getSitemapPages();
+		long modified = pages.stream().mapToLong(Sitemap.Page::getModified).max().orElse(0);
+		String loc = uriInfo.getAbsolutePath().toString().replaceFirst("\\.xml$", "/");
+		
+		StreamingOutput out = o -> sitemap.writeIndex(
+									new OutputStreamWriter(o, StandardCharsets.UTF_8), loc);
+		return Response.ok(out).lastModified(new Date(modified))
+						.cacheControl(updatedCacheControl()).build();
+	}
+	
+	/**
+	 * Get one gzip-compressed sitemap, streamed from disk
+	 * 
+	 * @param id page number
+	 * @return gzip-compressed XML sitemap
+	 */
+	@GET
+	@Path("/_sitemap/{id: [0-9]+}" + Sitemap.SUFFIX)
+	@Produces("application/x-gzip")
+	@ExceptionMetered
+	public Response getSitemap(@PathParam("id") int id) {
+		getSitemapPages();
+		Sitemap.Page page = sitemap.getPage(id);
+		if (page == null) {
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		}
+		return Response.ok(sitemap.getFile(id).toFile())
+						.lastModified(new Date(page.getModified()))
+						.cacheControl(updatedCacheControl()).build();
 	}
 	
 	/**
@@ -216,7 +862,26 @@ public abstract class RdfResource {
 		if (from != null) {
 			qry = qry.replaceFirst("WHERE", "FROM <" + from + "> WHERE");
 		}
-		return query(qry, map);
+		return query(EndpointClass.SEARCH, qry, map);
+	}
+	
+	/**
+	 * Full text search, with the relevance score of each match
+	 * 
+	 * @param text text to search for
+	 * @param limit maximum number of matches
+	 * @param alt location of the complete data when truncated, or null
+	 * @param deadline time when the search is aborted, as in {@link System#nanoTime()}
+	 * @return RDF model with labels and scores, best matches first
+	 */
+	protected Model getScoredFTS(String text, int limit, IRI alt, long deadline) {
+		long left = deadline - System.nanoTime();
+		if (left <= 0) {
+			throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+		}
+		Map<String,Value> map = new HashMap();
+		map.put("fts", asLiteral(text + "*"));
+		return query(EndpointClass.SEARCH, String.format(Q_FTS_SCORED, limit), map, alt, left);
 	}
 	
 	/**
@@ -248,44 +913,240 @@ public abstract class RdfResource {
 		if (from != null) {
 			qry = qry.replaceFirst("WHERE", "FROM <" + from + "> WHERE");
 		}
-		return query(qry , map);
+		return query(EndpointClass.FILTER, qry, map);
 	}
 	
 	
 	/**
-	 * Put statements in the store
+	 * Put statements in the store, or in the journal when write-behind is enabled
 	 * 
 	 * @param m 
+	 * @return response
 	 */
-	protected void putStatements(Model m) {
-		try (RepositoryConnection conn = this.repo.getConnection()) {
+	protected Response putStatements(Model m) {
+		if (journal != null) {
+			try {
+				return accepted(journal.put(name, m));
+			} catch (IOException ioe) {
+				throw new WebApplicationException(ioe);
+			}
+		}
+		if (listeners.isEmpty()) {
+			try (RepositoryConnection conn = getConnection()) {
+				conn.add(m);
+			} catch (RepositoryException e) {
+				throw new WebApplicationException(e);
+			}
+			return Response.ok().build();
+		}
+		// only notify listeners of statements not yet in the store
+		Model added;
+		try (RepositoryConnection conn = getConnection()) {
+			conn.begin();
+			added = NewStatements.of(conn, Collections.singletonList(m)).filter(m);
 			conn.add(m);
-		} catch (RepositoryException e) {
+			conn.commit();
+		} catch (RepositoryException|MalformedQueryException|QueryEvaluationException e) {
 			throw new WebApplicationException(e);
 		}
+		listeners.forEach(l -> l.added(added));
+		return Response.ok().build();
 	}
 	
 	/**
 	 * Delete all triples for subject URL
 	 * 
 	 * @param url subject to delete
+	 * @return response
 	 */
-	protected void deleteStatements(String url) {
-		try (RepositoryConnection conn = this.repo.getConnection()) {
-			conn.remove(fac.createIRI(url), null, null);
+	protected Response deleteStatements(String url) {
+		IRI subj = fac.createIRI(url);
+		if (journal != null) {
+			try {
+				return accepted(journal.delete(name, subj));
+			} catch (IOException ioe) {
+				throw new WebApplicationException(ioe);
+			}
+		}
+		Model m;
+		try (RepositoryConnection conn = getConnection()) {
+			conn.begin();
+			m = QueryResults.asModel(conn.getStatements(subj, null, null, false));
+			conn.remove(subj, null, null);
+			conn.commit();
 		} catch (RepositoryException e) {
 			throw new WebApplicationException(e);
 		}
+		listeners.forEach(l -> l.deleted(subj, m));
+		return Response.ok().build();
+	}
+	
+	/**
+	 * Response for an update accepted by the journal
+	 * 
+	 * @param id operation ID
+	 * @return 202 response pointing to the status of the operation
+	 */
+	private static Response accepted(long id) {
+		return Response.accepted("{\"id\":" + id + "}")
+					.type(MediaType.APPLICATION_JSON_TYPE)
+					.location(URI.create(OpsResource.PATH + "/" + id))
+					.build();
+	}
+	
+	/**
+	 * Get the JSON-LD context for this dataset
+	 * 
+	 * @param req request
+	 * @return JSON-LD context document
+	 */
+	@GET
+	@Path("/_context")
+	@Produces(RDFMediaType.JSONLD)
+	public Response getContext(@Context Request req) {
+		JSONLDContext ctx = JSONLDContext.of(namespaces);
+		EntityTag tag = new EntityTag(ctx.getETag());
+		
+		ResponseBuilder rb = req.evaluatePreconditions(tag);
+		if (rb == null) {
+			rb = Response.ok("{\"@context\":" + ctx.getJSON() + "}");
+		}
+		CacheControl cc = new CacheControl();
+		cc.setMaxAge(CONTEXT_MAX_AGE);
+		return rb.tag(tag).cacheControl(cc).build();
+	}
+	
+	/**
+	 * Set the log for recording slow queries
+	 * 
+	 * @param slowLog slow query log
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowLog) {
+		this.slowLog = slowLog;
+	}
+	
+	/**
+	 * Set the monitor enforcing query time limits
+	 * 
+	 * @param monitor query monitor
+	 */
+	public void setQueryMonitor(QueryMonitor monitor) {
+		this.monitor = monitor;
+	}
+	
+	/**
+	 * Set the maximum size of query results
+	 * 
+	 * @param budgets maximum number of triples and bytes per class of endpoints
+	 * @param alternative path of the complete data, relative to the base URI, or null
+	 */
+	public void setResponseBudgets(ResponseBudgetConfig budgets, String alternative) {
+		this.budgets = budgets;
+		this.alternative = alternative;
+	}
+	
+	/**
+	 * Set the maximum number of subjects in a batch request
+	 * 
+	 * @param batchSize maximum number of subjects
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Set how many levels of linked subjects are included in descriptions
+	 * 
+	 * @param describeDepth depth, 0 to only include the subject itself
+	 */
+	public void setDescribeDepth(int describeDepth) {
+		this.describeDepth = describeDepth;
+	}
+	
+	/**
+	 * Add a listener to be notified of changes to the store
+	 * 
+	 * @param listener store listener
+	 */
+	public void addStoreListener(StoreListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Record changed subjects in a change log, served as change feed
+	 * 
+	 * @param changes change log
+	 */
+	public void setChangeLog(ChangeLog changes) {
+		this.changes = changes;
+		listeners.add(changes);
+	}
+	
+	/**
+	 * Keep statistics of the dataset, served as VoID description
+	 * 
+	 * @param stats repository statistics
+	 */
+	public void setStats(RepositoryStats stats) {
+		this.stats = stats;
+		listeners.add(stats);
+	}
+	
+	/**
+	 * Skip the store for subjects that are certainly not in the repository
+	 * 
+	 * @param filter subject filter
+	 */
+	public void setSubjectFilter(SubjectFilter filter) {
+		this.filter = filter;
+		listeners.add(filter);
+	}
+	
+	/**
+	 * Serve sitemaps of the subjects in this dataset
+	 * 
+	 * @param sitemap sitemap
+	 */
+	public void setSitemap(Sitemap sitemap) {
+		this.sitemap = sitemap;
+		listeners.add(sitemap);
+	}
+	
+	/**
+	 * Get namespace of the subjects in this dataset
+	 * 
+	 * @return namespace or null
+	 */
+	public String getBase() {
+		return base;
+	}
+	
+	/**
+	 * Send updates to a write-behind journal instead of the store
+	 * 
+	 * @param journal journal
+	 * @param name repository name
+	 */
+	public void setJournal(Journal journal, String name) {
+		this.journal = journal;
+		this.name = name;
+		journal.addRepository(name, repo, listeners);
 	}
 	
 	/**
 	 * Constructor
 	 * 
 	 * @param repo 
+	 * @param dataset namespaces of the dataset, in addition to the common ones
 	 */
-	public RdfResource(Repository repo) {
+	public RdfResource(Repository repo, Namespace... dataset) {
 		this.repo = repo;
 		this.fac = repo.getValueFactory();
+		Set<Namespace> ns = new HashSet<>(Arrays.asList(NAMESPACES));
+		ns.addAll(Arrays.asList(dataset));
+		// shared by all result models
+		this.namespaces = Collections.unmodifiableSet(ns);
+		this.base = (dataset.length > 0) ? dataset[0].getName() : null;
 	}
 }
 
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.resources;
+
+import be.fedict.lodtools.web.helpers.RDFMediaType;
+import be.fedict.lodtools.web.helpers.Truncation;
+import be.fedict.lodtools.web.search.SearchConfig;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.annotation.ExceptionMetered;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Full text search in all repositories at once.
+ * 
+ * The repositories are queried in parallel, and the matches are merged by score
+ * as the results arrive. Repositories not answering in time are left out,
+ * so a slow repository degrades the result instead of delaying it.
+ * 
+ * @author Bart.Hanssens
+ */
+@Path("/_search")
+@Produces({RDFMediaType.JSONLD, RDFMediaType.NTRIPLES, RDFMediaType.TTL, 
+			RDFMediaType.BINARY, MediaType.TEXT_HTML})
+public class SearchResource {
+	private final static Logger LOG = LoggerFactory.getLogger(SearchResource.class);
+	
+	public final static String LUCENE = "http://www.ontotext.com/owlim/lucene#";
+	public final static String SCORE = LUCENE + "score";
+	
+	private final static ValueFactory F = SimpleValueFactory.getInstance();
+	private final static IRI SCORE_IRI = F.createIRI(SCORE);
+	private final static int RETRY_AFTER = 10;
+	
+	private final Map<String,RdfResource> resources = new LinkedHashMap<>();
+	private final ExecutorService exec;
+	private final long timeout;
+	private final int limit;
+	private final Meter incomplete;
+	
+	/**
+	 * Match of one subject
+	 */
+	private static class Hit {
+		private final Resource subj;
+		private final double score;
+		private final Model m;
+		
+		private Hit(Resource subj, double score, Model m) {
+			this.subj = subj;
+			this.score = score;
+			this.m = m;
+		}
+	}
+	
+	/**
+	 * Add a resource to be searched
+	 * 
+	 * @param name repository name
+	 * @param resource resource
+	 */
+	public void addResource(String name, RdfResource resource) {
+		resources.put(name.toLowerCase(), resource);
+	}
+	
+	/**
+	 * Get the highest score of a subject
+	 * 
+	 * @param m model with scores
+	 * @param subj subject
+	 * @return score
+	 */
+	private static double getScore(Model m, Resource subj) {
+		double max = 0;
+		for (Value v: m.filter(subj, SCORE_IRI, null).objects()) {
+			if (v instanceof Literal) {
+				try {
+					max = Math.max(max, ((Literal) v).doubleValue());
+				} catch (NumberFormatException nfe) {
+					//
+				}
+			}
+		}
+		return max;
+	}
+	
+	/**
+	 * Merge the matches of one repository into the top matches.
+	 * Truncation markers are copied unchanged.
+	 * 
+	 * @param top top matches, lowest score first
+	 * @param markers truncation markers
+	 * @param m matches of a repository
+	 */
+	private void merge(PriorityQueue<Hit> top, Model markers, Model m) {
+		for (Resource subj: m.subjects()) {
+			if (subj.equals(Truncation.MARKER)) {
+				markers.addAll(m.filter(subj, null, null));
+				continue;
+			}
+			double score = getScore(m, subj);
+			if (top.size() >= limit && score <= top.peek().score) {
+				continue;
+			}
+			Model labels = new LinkedHashModel(m.filter(subj, RDFS.LABEL, null));
+			top.add(new Hit(subj, score, labels));
+			if (top.size() > limit) {
+				top.poll();
+			}
+		}
+	}
+	
+	@GET
+	@ExceptionMetered
+	public Response search(@QueryParam("q") String text) {
+		if (text == null || text.trim().isEmpty()) {
+			throw new WebApplicationException(Response.Status.BAD_REQUEST);
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		
+		CompletionService<Model> cs = new ExecutorCompletionService<>(exec);
+		Map<Future<Model>,String> pending = new HashMap<>();
+		Set<String> missing = new TreeSet<>();
+		for (Map.Entry<String,RdfResource> e: resources.entrySet()) {
+			RdfResource resource = e.getValue();
+			// request-scoped, so resolved before running on another thread
+			IRI alt = resource.getAlternative();
+			try {
+				pending.put(cs.submit(() -> resource.getScoredFTS(text, limit, alt, deadline)), e.getKey());
+			} catch (RejectedExecutionException ree) {
+				missing.add(e.getKey());
+			}
+		}
+		
+		PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(h -> h.score));
+		Model markers = new LinkedHashModel();
+		try {
+			while (! pending.isEmpty()) {
+				long wait = deadline - System.nanoTime();
+				Future<Model> f = (wait > 0) ? cs.poll(wait, TimeUnit.NANOSECONDS) : null;
+				if (f == null) {
+					break;
+				}
+				String name = pending.remove(f);
+				try {
+					merge(top, markers, f.get());
+				} catch (ExecutionException ee) {
+					LOG.warn("Search in {} failed: {}", name, ee.getCause().getMessage());
+					missing.add(name);
+				}
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		for (Map.Entry<Future<Model>,String> e: pending.entrySet()) {
+			e.getKey().cancel(true);
+			missing.add(e.getValue());
+		}
+		
+		if (! missing.isEmpty() && missing.size() == resources.size()) {
+			throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+							.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER).build());
+		}
+		
+		List<Hit> hits = new ArrayList<>(top);
+		hits.sort(Comparator.comparingDouble((Hit h) -> h.score).reversed());
+		Model m = new LinkedHashModel();
+		for (Hit hit: hits) {
+			m.addAll(hit.m);
+			m.add(hit.subj, SCORE_IRI, F.createLiteral(hit.score));
+		}
+		m.addAll(markers);
+		if (! m.isEmpty()) {
+			m.setNamespace(RDFS.NS);
+			m.setNamespace(new SimpleNamespace("luc", LUCENE));
+		}
+		
+		Response.ResponseBuilder rb = Response.ok(m);
+		if (! missing.isEmpty()) {
+			incomplete.mark();
+			rb.header(Truncation.WARNING, "199 - \"Incomplete result, no answer from " 
+										+ String.join(", ", missing) + "\"");
+		}
+		return rb.build();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg search configuration
+	 * @param exec executor querying the repositories
+	 * @param metrics metric registry
+	 */
+	public SearchResource(SearchConfig cfg, ExecutorService exec, MetricRegistry metrics) {
+		this.exec = exec;
+		this.timeout = cfg.getTimeout();
+		this.limit = cfg.getLimit();
+		this.incomplete = metrics.meter(MetricRegistry.name(SearchResource.class, "incomplete"));
+	}
+}
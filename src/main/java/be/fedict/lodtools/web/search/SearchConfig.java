@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration of the search across all repositories
+ * 
+ * @author Bart.Hanssens
+ */
+public class SearchConfig {
+	@Min(1)
+	private long timeout = 2000;
+	@Min(1) @Max(1000)
+	private int limit = 100;
+	@Min(1)
+	private int threads = 8;
+
+	/**
+	 * Get maximum time to wait for the results of a repository
+	 * 
+	 * @return time in milliseconds
+	 */
+	@JsonProperty
+	public long getTimeout() {
+		return timeout;
+	}
+
+	@JsonProperty
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Get maximum number of matches in the merged result
+	 * 
+	 * @return number of matches
+	 */
+	@JsonProperty
+	public int getLimit() {
+		return limit;
+	}
+
+	@JsonProperty
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Get number of threads querying the repositories
+	 * 
+	 * @return number of threads
+	 */
+	@JsonProperty
+	public int getThreads() {
+		return threads;
+	}
+
+	@JsonProperty
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+}
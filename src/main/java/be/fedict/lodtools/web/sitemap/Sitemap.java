@@ -0,0 +1,601 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.sitemap;
+
+import be.fedict.lodtools.web.resources.StoreListener;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+
+/**
+ * Sitemaps of the subjects of one repository, cached on disk as gzip-compressed files.
+ * 
+ * Subjects are sorted by IRI and cut in pages, each page covering a range of IRIs 
+ * starting at its first key. 
+ * A full build streams all subjects with one ordered query, a refresh only rewrites 
+ * the pages whose range contains a changed subject, using the keys as cursor.
+ * Consecutive changed pages are rewritten with one query, and when many pages
+ * changed, all pages are rewritten with one query, since each query scans all subjects.
+ * A page that grows too large is split, an empty page is merged with the previous one.
+ * Pages keep their number and modification time as long as their content does not change,
+ * so crawlers only need to fetch new or modified pages.
+ * 
+ * @author Bart.Hanssens
+ */
+public class Sitemap implements StoreListener {
+	public final static String SUFFIX = ".xml.gz";
+	private final static String TMP = ".tmp";
+	private final static String INDEX = "index";
+	private final static String ID = "#id";
+	private final static int SIZE = 64 * 1024;
+	// rewrite all pages when the changed pages would need more queries
+	private final static int MAX_DIRTY = 4;
+	
+	private final static String NS = "http://www.sitemaps.org/schemas/sitemap/0.9";
+	private final static String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+	
+	private final static String Q_SUBJECTS = 
+			"SELECT DISTINCT ?s WHERE { ?s ?p ?o "
+			+ " FILTER (isIRI(?s) && STRSTARTS(STR(?s), ?prefix) && STRENDS(STR(?s), \"#id\")%s) }"
+			+ " ORDER BY STR(?s)";
+	
+	/**
+	 * One sitemap, covering the subjects from its first key up to the first key of the next page
+	 */
+	public static class Page {
+		private final int id;
+		private final String first;
+		private final int count;
+		private final long crc;
+		private final long modified;
+		
+		/**
+		 * Get page number
+		 * 
+		 * @return number
+		 */
+		public int getId() {
+			return id;
+		}
+		
+		/**
+		 * Get time of the last change
+		 * 
+		 * @return timestamp in milliseconds
+		 */
+		public long getModified() {
+			return modified;
+		}
+		
+		/**
+		 * Get number of URLs
+		 * 
+		 * @return number of URLs
+		 */
+		public int getCount() {
+			return count;
+		}
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param id page number
+		 * @param first lowest key of the range, empty for the first page
+		 * @param count number of URLs
+		 * @param crc checksum of the URLs
+		 * @param modified time of the last change
+		 */
+		private Page(int id, String first, int count, long crc, long modified) {
+			this.id = id;
+			this.first = first;
+			this.count = count;
+			this.crc = crc;
+			this.modified = modified;
+		}
+	}
+	
+	/**
+	 * Writes one page to a temporary file
+	 */
+	private class PageWriter {
+		private final Page old;
+		private final int id;
+		private final String first;
+		private final Path tmp;
+		private final Writer w;
+		private final CRC32 crc = new CRC32();
+		private int count = 0;
+		
+		/**
+		 * Add URL of a subject to the page
+		 * 
+		 * @param subj subject IRI
+		 * @throws IOException 
+		 */
+		private void add(String subj) throws IOException {
+			String loc = subj.substring(0, subj.length() - ID.length());
+			crc.update(loc.getBytes(StandardCharsets.UTF_8));
+			w.write("<url><loc>");
+			escape(w, loc);
+			w.write("</loc></url>\n");
+			count++;
+		}
+		
+		/**
+		 * Close and move the file in place, unless the content did not change
+		 * 
+		 * @return page
+		 * @throws IOException 
+		 */
+		private Page close() throws IOException {
+			w.write("</urlset>\n");
+			w.close();
+			
+			Path file = getFile(id);
+			if (old != null && old.crc == crc.getValue() && old.count == count && Files.exists(file)) {
+				Files.delete(tmp);
+				return new Page(id, first, count, old.crc, old.modified);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return new Page(id, first, count, crc.getValue(), System.currentTimeMillis());
+		}
+		
+		/**
+		 * Remove the temporary file
+		 */
+		private void abort() {
+			try {
+				w.close();
+				Files.deleteIfExists(tmp);
+			} catch (IOException ioe) {
+				//
+			}
+		}
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param old previous version of the page or null
+		 * @param first lowest key of the range
+		 * @throws IOException 
+		 */
+		private PageWriter(Page old, String first) throws IOException {
+			this.old = old;
+			this.id = (old != null) ? old.id : nextId++;
+			this.first = first;
+			this.tmp = dir.resolve(id + SUFFIX + TMP);
+			this.w = new BufferedWriter(new OutputStreamWriter(
+						new GZIPOutputStream(Files.newOutputStream(tmp), SIZE), StandardCharsets.UTF_8));
+			w.write(XML);
+			w.write("<urlset xmlns=\"" + NS + "\">\n");
+		}
+	}
+
+	private final Path dir;
+	private final String prefix;
+	private final int pageSize;
+	private final Runnable onChange;
+	private final Set<String> changed = ConcurrentHashMap.newKeySet();
+	private volatile List<Page> pages = null;
+	private int nextId = 0;
+	
+	/**
+	 * Escape XML special characters
+	 * 
+	 * @param w writer
+	 * @param s string
+	 * @throws IOException 
+	 */
+	private static void escape(Writer w, String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '&': w.write("&amp;"); break;
+				case '<': w.write("&lt;"); break;
+				case '>': w.write("&gt;"); break;
+				case '"': w.write("&quot;"); break;
+				case '\'': w.write("&apos;"); break;
+				default: w.write(c);
+			}
+		}
+	}
+	
+	/**
+	 * Check if a subject has a page of its own
+	 * 
+	 * @param subj subject
+	 * @return true if subject is listed in the sitemap
+	 */
+	private boolean isListed(Resource subj) {
+		if (!(subj instanceof IRI)) {
+			return false;
+		}
+		String s = subj.stringValue();
+		return s.startsWith(prefix) && s.endsWith(ID);
+	}
+	
+	/**
+	 * Mark a subject as changed
+	 * 
+	 * @param subj subject
+	 * @return true if the subject is listed
+	 */
+	private boolean changed(Resource subj) {
+		return isListed(subj) && changed.add(subj.stringValue());
+	}
+	
+	@Override
+	public void added(Model m) {
+		boolean any = false;
+		for (Resource subj: m.subjects()) {
+			any |= changed(subj);
+		}
+		if (any) {
+			onChange.run();
+		}
+	}
+
+	@Override
+	public void deleted(IRI subj, Model m) {
+		if (changed(subj)) {
+			onChange.run();
+		}
+	}
+	
+	/**
+	 * Get pages
+	 * 
+	 * @return sorted list of pages, or null when not built yet
+	 */
+	public List<Page> getPages() {
+		return pages;
+	}
+	
+	/**
+	 * Get a page by number
+	 * 
+	 * @param id page number
+	 * @return page or null
+	 */
+	public Page getPage(int id) {
+		List<Page> p = pages;
+		if (p != null) {
+			for (Page page: p) {
+				if (page.id == id) {
+					return page;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the file of a page
+	 * 
+	 * @param id page number
+	 * @return path
+	 */
+	public Path getFile(int id) {
+		return dir.resolve(id + SUFFIX);
+	}
+	
+	/**
+	 * Write sitemap index
+	 * 
+	 * @param w writer
+	 * @param base URL of the sitemaps, ending with a slash
+	 * @throws IOException 
+	 */
+	public void writeIndex(Writer w, String base) throws IOException {
+		w.write(XML);
+		w.write("<sitemapindex xmlns=\"" + NS + "\">\n");
+		for (Page page: pages) {
+			w.write("<sitemap><loc>");
+			escape(w, base + page.id + SUFFIX);
+			w.write("</loc><lastmod>");
+			w.write(Instant.ofEpochSecond(page.modified / 1000).toString());
+			w.write("</lastmod></sitemap>\n");
+		}
+		w.write("</sitemapindex>\n");
+		w.flush();
+	}
+	
+	/**
+	 * Get index of the page covering a key
+	 * 
+	 * @param p list of pages
+	 * @param key subject IRI
+	 * @return index in the list
+	 */
+	private static int find(List<Page> p, String key) {
+		int lo = 0;
+		int hi = p.size() - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (p.get(mid).first.compareTo(key) <= 0) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+	
+	/**
+	 * Get first key of the range of a page
+	 * 
+	 * @param p page or null for a new first page
+	 * @return key
+	 */
+	private static String first(Page p) {
+		return (p == null) ? "" : p.first;
+	}
+	
+	/**
+	 * Rewrite consecutive pages, keeping their ranges.
+	 * Pages without subjects are dropped, except the very first one,
+	 * and full pages are split.
+	 * 
+	 * @param conn repository connection
+	 * @param old consecutive pages, or empty list for a new sitemap
+	 * @param hi first key of the next page, or null for no upper bound
+	 * @return list of pages
+	 * @throws IOException 
+	 */
+	private List<Page> scan(RepositoryConnection conn, List<Page> old, String hi) throws IOException {
+		List<Page> ranges = old.isEmpty() ? Collections.singletonList(null) : old;
+		String lo = first(ranges.get(0));
+		
+		String bounds = (lo.isEmpty() ? "" : " && STR(?s) >= ?lo") 
+						+ ((hi == null) ? "" : " && STR(?s) < ?hi");
+		TupleQuery q = conn.prepareTupleQuery(QueryLanguage.SPARQL, String.format(Q_SUBJECTS, bounds));
+		ValueFactory fac = conn.getValueFactory();
+		q.setBinding("prefix", fac.createLiteral(prefix));
+		if (!lo.isEmpty()) {
+			q.setBinding("lo", fac.createLiteral(lo));
+		}
+		if (hi != null) {
+			q.setBinding("hi", fac.createLiteral(hi));
+		}
+		
+		List<Page> res = new ArrayList<>();
+		int k = 0;
+		PageWriter w = lo.isEmpty() ? new PageWriter(ranges.get(0), lo) : null;
+		try (TupleQueryResult r = q.evaluate()) {
+			while (r.hasNext()) {
+				String s = r.next().getValue("s").stringValue();
+				boolean next = false;
+				while (k + 1 < ranges.size() && ranges.get(k + 1).first.compareTo(s) <= 0) {
+					k++;
+					next = true;
+				}
+				if (w == null || next || w.count >= pageSize) {
+					if (w != null) {
+						res.add(w.close());
+					}
+					w = (w == null || next) ? new PageWriter(ranges.get(k), first(ranges.get(k)))
+											: new PageWriter(null, s);
+				}
+				w.add(s);
+			}
+			if (w != null) {
+				res.add(w.close());
+			}
+		} catch (IOException|RuntimeException e) {
+			if (w != null) {
+				w.abort();
+			}
+			throw e;
+		}
+		return res;
+	}
+	
+	/**
+	 * Store the list of pages and remove files of pages that are no longer used
+	 * 
+	 * @param res new list of pages
+	 * @throws IOException 
+	 */
+	private void commit(List<Page> res) throws IOException {
+		Path tmp = dir.resolve(INDEX + TMP);
+		try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+			for (Page p: res) {
+				w.write(p.id + "\t" + p.count + "\t" + p.crc + "\t" + p.modified + "\t" + p.first + "\n");
+			}
+		}
+		Files.move(tmp, dir.resolve(INDEX), StandardCopyOption.REPLACE_EXISTING, 
+										StandardCopyOption.ATOMIC_MOVE);
+		
+		Set<Integer> used = new HashSet<>();
+		res.forEach(p -> used.add(p.id));
+		List<Page> old = pages;
+		pages = Collections.unmodifiableList(res);
+		
+		if (old != null) {
+			for (Page p: old) {
+				if (!used.contains(p.id)) {
+					Files.deleteIfExists(getFile(p.id));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Load the list of pages from disk, and remove incomplete files
+	 * 
+	 * @return true if the sitemap was built before
+	 * @throws IOException 
+	 */
+	public boolean load() throws IOException {
+		Files.createDirectories(dir);
+		try (DirectoryStream<Path> tmps = Files.newDirectoryStream(dir, "*" + TMP)) {
+			for (Path tmp: tmps) {
+				Files.delete(tmp);
+			}
+		}
+		Path index = dir.resolve(INDEX);
+		if (!Files.exists(index)) {
+			return false;
+		}
+		List<Page> res = new ArrayList<>();
+		try (BufferedReader r = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				String[] f = line.split("\t", 5);
+				Page p = new Page(Integer.parseInt(f[0]), f[4], Integer.parseInt(f[1]), 
+									Long.parseLong(f[2]), Long.parseLong(f[3]));
+				if (!Files.exists(getFile(p.id))) {
+					return false;
+				}
+				res.add(p);
+				nextId = Math.max(nextId, p.id + 1);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt sitemap index " + index, e);
+		}
+		pages = Collections.unmodifiableList(res);
+		return !res.isEmpty();
+	}
+	
+	/**
+	 * Build all pages with one ordered scan of the subjects
+	 * 
+	 * @param conn repository connection
+	 * @throws IOException
+	 * @throws RepositoryException
+	 * @throws QueryEvaluationException
+	 */
+	public void rebuild(RepositoryConnection conn) throws IOException {
+		// writes from now on will be picked up by the next refresh
+		changed.clear();
+		commit(scan(conn, (pages != null) ? pages : Collections.emptyList(), null));
+	}
+	
+	/**
+	 * Rewrite the pages with changed subjects, splitting or merging pages when needed
+	 * 
+	 * @param conn repository connection
+	 * @throws IOException
+	 * @throws RepositoryException
+	 * @throws QueryEvaluationException
+	 */
+	public void refresh(RepositoryConnection conn) throws IOException {
+		List<Page> cur = pages;
+		if (cur == null || changed.isEmpty()) {
+			return;
+		}
+		Set<Integer> dirty = new TreeSet<>();
+		for (Iterator<String> it = changed.iterator(); it.hasNext(); ) {
+			dirty.add(find(cur, it.next()));
+			it.remove();
+		}
+		
+		List<Page> res = new ArrayList<>(cur.size());
+		// consecutive dirty pages, as start and end index
+		List<int[]> runs = new ArrayList<>();
+		for (int i: dirty) {
+			int[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+			if (last != null && last[1] == i) {
+				last[1] = i + 1;
+			} else {
+				runs.add(new int[] { i, i + 1 });
+			}
+		}
+		if (runs.size() > MAX_DIRTY) {
+			// one scan of all subjects is cheaper than one scan per run
+			runs = Collections.singletonList(new int[] { 0, cur.size() });
+		}
+		
+		int i = 0;
+		for (int[] run: runs) {
+			int from = run[0];
+			int to = run[1];
+			res.addAll(cur.subList(i, from));
+			try {
+				String hi = (to < cur.size()) ? cur.get(to).first : null;
+				res.addAll(scan(conn, cur.subList(from, to), hi));
+			} catch (IOException|RuntimeException e) {
+				// try again next time
+				for (int j: dirty) {
+					if (j >= from) {
+						changed.add(cur.get(j).first);
+					}
+				}
+				res.addAll(cur.subList(from, cur.size()));
+				commit(res);
+				throw e;
+			}
+			i = to;
+		}
+		res.addAll(cur.subList(i, cur.size()));
+		commit(res);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param dir directory for the files of this sitemap
+	 * @param prefix namespace of the subjects to be listed
+	 * @param pageSize maximum number of URLs per page
+	 * @param onChange called when subjects were changed
+	 */
+	public Sitemap(Path dir, String prefix, int pageSize, Runnable onChange) {
+		this.dir = dir;
+		this.prefix = prefix;
+		this.pageSize = pageSize;
+		this.onChange = onChange;
+	}
+}
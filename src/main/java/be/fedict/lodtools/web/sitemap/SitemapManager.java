@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.sitemap;
+
+import be.fedict.lodtools.web.store.RepositoryUnavailableException;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the sitemaps of each repository at startup and periodically,
+ * and refreshes the changed pages some time after the last write.
+ * 
+ * @author Bart.Hanssens
+ */
+public class SitemapManager implements Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(SitemapManager.class);
+	
+	private final Path dir;
+	private final int pageSize;
+	private final long interval;
+	private final long settle;
+	
+	private final Map<String,Repository> repos = new ConcurrentHashMap<>();
+	private final Map<String,Sitemap> sitemaps = new ConcurrentHashMap<>();
+	private final Map<String,Long> changed = new ConcurrentHashMap<>();
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	private ScheduledExecutorService exec;
+	
+	/**
+	 * Add repository
+	 * 
+	 * @param name repository name
+	 * @param repo repository
+	 * @param prefix namespace of the subjects to be listed
+	 * @return sitemap of the repository
+	 */
+	public Sitemap addRepository(String name, Repository repo, String prefix) {
+		String key = name.toLowerCase();
+		repos.put(key, repo);
+		return sitemaps.computeIfAbsent(key, 
+				k -> new Sitemap(dir.resolve(k), prefix, pageSize, () -> changed(k)));
+	}
+	
+	/**
+	 * Get names of the repositories
+	 * 
+	 * @return set of names
+	 */
+	public Set<String> getNames() {
+		return repos.keySet();
+	}
+	
+	/**
+	 * Mark repository as changed, and schedule a refresh when writes have settled
+	 * 
+	 * @param name repository name
+	 */
+	private void changed(String name) {
+		changed.put(name, System.nanoTime());
+		if (pending.add(name)) {
+			exec.schedule(() -> settled(name), settle, TimeUnit.SECONDS);
+		}
+	}
+	
+	/**
+	 * Refresh the sitemap when there were no writes during the settle period,
+	 * otherwise check again later.
+	 * 
+	 * @param name repository name
+	 */
+	private void settled(String name) {
+		long wait = TimeUnit.SECONDS.toNanos(settle) - (System.nanoTime() - changed.get(name));
+		if (wait > 0) {
+			exec.schedule(() -> settled(name), wait, TimeUnit.NANOSECONDS);
+			return;
+		}
+		pending.remove(name);
+		try {
+			refresh(name);
+		} catch (RepositoryException|QueryEvaluationException|IOException e) {
+			LOG.error("Refresh of sitemap {} failed", name, e);
+		}
+	}
+	
+	/**
+	 * Get repository
+	 * 
+	 * @param name repository name
+	 * @return repository
+	 * @throws RepositoryException 
+	 */
+	private Repository getRepository(String name) throws RepositoryException {
+		Repository repo = repos.get(name);
+		if (repo == null) {
+			throw new RepositoryException("Unknown repository " + name);
+		}
+		return repo;
+	}
+	
+	/**
+	 * Rebuild all pages of the sitemap of a repository
+	 * 
+	 * @param name repository name
+	 * @throws RepositoryException
+	 * @throws IOException
+	 */
+	public synchronized void rebuild(String name) throws RepositoryException, IOException {
+		long start = System.currentTimeMillis();
+		try (RepositoryConnection conn = getRepository(name).getConnection()) {
+			sitemaps.get(name).rebuild(conn);
+		} finally {
+			LOG.info("Sitemap of {} built in {} ms", name, System.currentTimeMillis() - start);
+		}
+	}
+	
+	/**
+	 * Rewrite the changed pages of the sitemap of a repository
+	 * 
+	 * @param name repository name
+	 * @throws RepositoryException
+	 * @throws IOException
+	 */
+	public synchronized void refresh(String name) throws RepositoryException, IOException {
+		try (RepositoryConnection conn = getRepository(name).getConnection()) {
+			sitemaps.get(name).refresh(conn);
+		}
+	}
+	
+	/**
+	 * Rebuild sitemap, logging errors instead of throwing them
+	 * 
+	 * @param name repository name
+	 */
+	private void rebuildQuietly(String name) {
+		try {
+			rebuild(name);
+		} catch (RepositoryUnavailableException e) {
+			LOG.info("Repository {} not available yet, sitemap postponed", name);
+			exec.schedule(() -> rebuildQuietly(name), 1, TimeUnit.MINUTES);
+		} catch (RepositoryException|QueryEvaluationException|IOException e) {
+			LOG.error("Sitemap of {} failed", name, e);
+		}
+	}
+	
+	@Override
+	public void start() throws Exception {
+		exec = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "sitemap");
+			t.setDaemon(true);
+			return t;
+		});
+		for (Map.Entry<String,Sitemap> e: sitemaps.entrySet()) {
+			String name = e.getKey();
+			// pages on disk were kept up to date by refreshes, so the full build can wait
+			long delay = 0;
+			try {
+				if (e.getValue().load()) {
+					delay = interval;
+				}
+			} catch (IOException ioe) {
+				LOG.warn("Could not load sitemap of {}", name, ioe);
+			}
+			exec.scheduleWithFixedDelay(() -> rebuildQuietly(name), delay, interval, TimeUnit.MINUTES);
+		}
+	}
+
+	@Override
+	public void stop() throws Exception {
+		exec.shutdownNow();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg sitemap configuration
+	 */
+	public SitemapManager(SitemapConfig cfg) {
+		this.dir = Paths.get(cfg.getDir());
+		this.pageSize = cfg.getPageSize();
+		this.interval = cfg.getInterval();
+		this.settle = cfg.getSettle();
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.stats;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+
+/**
+ * Statistics of one graph: number of triples, entities per class, 
+ * triples per property, and an estimate of the number of distinct subjects.
+ * 
+ * @author Bart.Hanssens
+ */
+public class GraphStats {
+	private final LongAdder triples = new LongAdder();
+	private final Map<IRI,LongAdder> classes = new ConcurrentHashMap<>();
+	private final Map<IRI,LongAdder> properties = new ConcurrentHashMap<>();
+	private final HyperLogLog subjects = new HyperLogLog();
+	// subjects deleted and not added again since the last recount,
+	// since they can't be removed from the estimator
+	private final Set<String> deleted;
+	
+	/**
+	 * Increment or decrement a counter
+	 * 
+	 * @param map counters
+	 * @param key key
+	 * @param delta +1 or -1
+	 */
+	private static void count(Map<IRI,LongAdder> map, IRI key, int delta) {
+		LongAdder c = map.get(key);
+		if (c == null) {
+			c = map.computeIfAbsent(key, k -> new LongAdder());
+		}
+		c.add(delta);
+	}
+	
+	/**
+	 * Count a statement
+	 * 
+	 * @param st statement
+	 */
+	public void add(Statement st) {
+		triples.increment();
+		count(properties, st.getPredicate(), 1);
+		if (st.getPredicate().equals(RDF.TYPE) && st.getObject() instanceof IRI) {
+			count(classes, (IRI) st.getObject(), 1);
+		}
+		String subj = st.getSubject().stringValue();
+		subjects.add(subj);
+		if (! deleted.isEmpty()) {
+			deleted.remove(subj);
+		}
+	}
+	
+	/**
+	 * Uncount a statement
+	 * 
+	 * @param st statement
+	 */
+	public void remove(Statement st) {
+		triples.decrement();
+		count(properties, st.getPredicate(), -1);
+		if (st.getPredicate().equals(RDF.TYPE) && st.getObject() instanceof IRI) {
+			count(classes, (IRI) st.getObject(), -1);
+		}
+	}
+	
+	/**
+	 * Uncount a subject of which all statements were deleted
+	 * 
+	 * @param subj subject
+	 */
+	public void removeSubject(Resource subj) {
+		deleted.add(subj.stringValue());
+	}
+	
+	/**
+	 * Add the statistics of another graph to this one.
+	 * Deleted subjects are not merged, since a subject deleted in one graph
+	 * may have been added again in another one.
+	 * 
+	 * @param other graph statistics
+	 */
+	public void merge(GraphStats other) {
+		triples.add(other.triples.sum());
+		other.classes.forEach((k,v) -> classes.computeIfAbsent(k, x -> new LongAdder()).add(v.sum()));
+		other.properties.forEach((k,v) -> properties.computeIfAbsent(k, x -> new LongAdder()).add(v.sum()));
+		subjects.merge(other.subjects);
+	}
+	
+	public long getTriples() {
+		return triples.sum();
+	}
+	
+	/**
+	 * Get the estimated number of distinct subjects
+	 * 
+	 * @return number of subjects
+	 */
+	public long getDistinctSubjects() {
+		return Math.max(0, subjects.estimate() - deleted.size());
+	}
+	
+	/**
+	 * Get the number of entities per class
+	 * 
+	 * @return map of class IRI and count
+	 */
+	public Map<IRI,LongAdder> getClasses() {
+		return classes;
+	}
+	
+	/**
+	 * Get the number of triples per property
+	 * 
+	 * @return map of property IRI and count
+	 */
+	public Map<IRI,LongAdder> getProperties() {
+		return properties;
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param deleted set to keep track of deleted subjects
+	 */
+	public GraphStats(Set<String> deleted) {
+		this.deleted = deleted;
+	}
+	
+	/**
+	 * Constructor
+	 */
+	public GraphStats() {
+		this(ConcurrentHashMap.newKeySet());
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.stats;
+
+import be.fedict.lodtools.web.helpers.Hashing;
+
+/**
+ * HyperLogLog estimator of the number of distinct strings, 
+ * using 2^14 registers (16 KB, standard error of about 0.8%).
+ * 
+ * @author Bart.Hanssens
+ */
+public class HyperLogLog {
+	private final static int P = 14;
+	private final static int M = 1 << P;
+	private final static double ALPHA = 0.7213 / (1 + 1.079 / M);
+	
+	private final byte[] registers = new byte[M];
+	
+	/**
+	 * Add a string
+	 * 
+	 * @param s string
+	 */
+	public synchronized void add(String s) {
+		long h = Hashing.hash64(s);
+		int idx = (int) (h >>> (64 - P));
+		byte rank = (byte) (Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1);
+		if (rank > registers[idx]) {
+			registers[idx] = rank;
+		}
+	}
+	
+	/**
+	 * Merge another estimator into this one
+	 * 
+	 * @param other estimator
+	 */
+	public synchronized void merge(HyperLogLog other) {
+		byte[] regs;
+		synchronized(other) {
+			regs = other.registers.clone();
+		}
+		for (int i = 0; i < M; i++) {
+			if (regs[i] > registers[i]) {
+				registers[i] = regs[i];
+			}
+		}
+	}
+	
+	/**
+	 * Estimate the number of distinct strings
+	 * 
+	 * @return estimate
+	 */
+	public synchronized long estimate() {
+		double sum = 0;
+		int zeros = 0;
+		for (byte r: registers) {
+			sum += 1.0 / (1L << r);
+			if (r == 0) {
+				zeros++;
+			}
+		}
+		double e = ALPHA * M * M / sum;
+		// linear counting for small numbers
+		if (e <= 2.5 * M && zeros > 0) {
+			e = M * Math.log((double) M / zeros);
+		}
+		return Math.round(e);
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.stats;
+
+import be.fedict.lodtools.web.resources.StoreListener;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+/**
+ * Statistics of a repository and its named graphs.
+ * 
+ * The statistics are recounted with a scan of all statements, and updated 
+ * when statements are added or deleted in between.
+ * 
+ * @author Bart.Hanssens
+ */
+public class RepositoryStats implements StoreListener {
+	private final static ValueFactory F = SimpleValueFactory.getInstance();
+	
+	public final static String VOID = "http://rdfs.org/ns/void#";
+	private final static IRI DATASET = F.createIRI(VOID, "Dataset");
+	private final static IRI TRIPLES = F.createIRI(VOID, "triples");
+	private final static IRI DISTINCT_SUBJECTS = F.createIRI(VOID, "distinctSubjects");
+	private final static IRI CLASSES = F.createIRI(VOID, "classes");
+	private final static IRI PROPERTIES = F.createIRI(VOID, "properties");
+	private final static IRI ENTITIES = F.createIRI(VOID, "entities");
+	private final static IRI CLASS = F.createIRI(VOID, "class");
+	private final static IRI PROPERTY = F.createIRI(VOID, "property");
+	private final static IRI CLASS_PARTITION = F.createIRI(VOID, "classPartition");
+	private final static IRI PROPERTY_PARTITION = F.createIRI(VOID, "propertyPartition");
+	private final static IRI SUBSET = F.createIRI(VOID, "subset");
+	
+	private volatile Counts current = new Counts(0);
+	
+	/**
+	 * Statistics of the default graph and named graphs, since a recount
+	 */
+	private static class Counts {
+		private final long counted;
+		private final GraphStats dflt = new GraphStats();
+		private final Map<Resource,GraphStats> graphs = new ConcurrentHashMap<>();
+		// subjects deleted and not added again in any graph
+		private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+		
+		/**
+		 * Get the statistics of a graph
+		 * 
+		 * @param ctx named graph or null for the default graph
+		 * @return graph statistics
+		 */
+		private GraphStats graph(Resource ctx) {
+			if (ctx == null) {
+				return dflt;
+			}
+			GraphStats gs = graphs.get(ctx);
+			return (gs != null) ? gs : graphs.computeIfAbsent(ctx, k -> new GraphStats());
+		}
+		
+		public Counts(long counted) {
+			this.counted = counted;
+		}
+	}
+	
+	/**
+	 * Get the time of the last full recount
+	 * 
+	 * @return time in milliseconds since epoch, 0 if not counted yet
+	 */
+	public long getCounted() {
+		return current.counted;
+	}
+	
+	@Override
+	public void added(Model m) {
+		Counts c = current;
+		for (Statement st: m) {
+			c.graph(st.getContext()).add(st);
+			if (! c.deleted.isEmpty()) {
+				c.deleted.remove(st.getSubject().stringValue());
+			}
+		}
+	}
+
+	@Override
+	public void deleted(IRI subj, Model m) {
+		Counts c = current;
+		Set<GraphStats> touched = new HashSet<>();
+		for (Statement st: m) {
+			GraphStats gs = c.graph(st.getContext());
+			gs.remove(st);
+			touched.add(gs);
+		}
+		touched.forEach(gs -> gs.removeSubject(subj));
+		if (! touched.isEmpty()) {
+			c.deleted.add(subj.stringValue());
+		}
+	}
+	
+	/**
+	 * Get a handler recounting all statements, the new statistics replace 
+	 * the current ones when all statements are handled.
+	 * 
+	 * Changes made during the scan may not be counted until the next recount.
+	 * 
+	 * @return RDF handler
+	 */
+	public RDFHandler recount() {
+		return new AbstractRDFHandler() {
+			private Counts counts = new Counts(System.currentTimeMillis());
+			
+			@Override
+			public void handleStatement(Statement st) {
+				counts.graph(st.getContext()).add(st);
+			}
+			
+			@Override
+			public void endRDF() {
+				current = counts;
+			}
+		};
+	}
+	
+	/**
+	 * Create a non-negative integer literal
+	 * 
+	 * @param l number
+	 * @return literal
+	 */
+	private static Literal integer(long l) {
+		return F.createLiteral(Long.toString(Math.max(0, l)), XMLSchema.INTEGER);
+	}
+	
+	/**
+	 * Add a VoID description of a graph to a model
+	 * 
+	 * @param m model
+	 * @param ds dataset
+	 * @param gs graph statistics
+	 */
+	private static void describe(Model m, Resource ds, GraphStats gs) {
+		m.add(ds, RDF.TYPE, DATASET);
+		m.add(ds, TRIPLES, integer(gs.getTriples()));
+		m.add(ds, DISTINCT_SUBJECTS, integer(gs.getDistinctSubjects()));
+		
+		int classes = 0;
+		for (Map.Entry<IRI,LongAdder> e: gs.getClasses().entrySet()) {
+			long count = e.getValue().sum();
+			if (count > 0) {
+				BNode part = F.createBNode();
+				m.add(ds, CLASS_PARTITION, part);
+				m.add(part, CLASS, e.getKey());
+				m.add(part, ENTITIES, integer(count));
+				classes++;
+			}
+		}
+		m.add(ds, CLASSES, integer(classes));
+		
+		int properties = 0;
+		for (Map.Entry<IRI,LongAdder> e: gs.getProperties().entrySet()) {
+			long count = e.getValue().sum();
+			if (count > 0) {
+				BNode part = F.createBNode();
+				m.add(ds, PROPERTY_PARTITION, part);
+				m.add(part, PROPERTY, e.getKey());
+				m.add(part, TRIPLES, integer(count));
+				properties++;
+			}
+		}
+		m.add(ds, PROPERTIES, integer(properties));
+	}
+	
+	/**
+	 * Get the statistics as VoID description.
+	 * Each named graph is described as a subset of the dataset.
+	 * 
+	 * @param dataset IRI of the dataset
+	 * @return RDF model
+	 */
+	public Model toVoID(IRI dataset) {
+		Counts c = current;
+		Model m = new LinkedHashModel();
+		m.setNamespace(new SimpleNamespace("void", VOID));
+		
+		GraphStats total = new GraphStats(c.deleted);
+		total.merge(c.dflt);
+		c.graphs.values().forEach(total::merge);
+		describe(m, dataset, total);
+		m.add(dataset, DCTERMS.MODIFIED, 
+			F.createLiteral(Instant.ofEpochMilli(c.counted).toString(), XMLSchema.DATETIME));
+		
+		for (Map.Entry<Resource,GraphStats> e: c.graphs.entrySet()) {
+			if (e.getValue().getTriples() > 0) {
+				m.add(dataset, SUBSET, e.getKey());
+				describe(m, e.getKey(), e.getValue());
+			}
+		}
+		return m;
+	}
+}
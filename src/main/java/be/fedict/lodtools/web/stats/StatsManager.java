@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.stats;
+
+import be.fedict.lodtools.web.store.RepositoryUnavailableException;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recounts the statistics of each repository at startup and periodically,
+ * with a single pass over all statements.
+ * 
+ * @author Bart.Hanssens
+ */
+public class StatsManager implements Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(StatsManager.class);
+	
+	private final long interval;
+	private final Map<String,Repository> repos = new ConcurrentHashMap<>();
+	private final Map<String,RepositoryStats> stats = new ConcurrentHashMap<>();
+	private ScheduledExecutorService exec;
+	
+	/**
+	 * Add repository
+	 * 
+	 * @param name repository name
+	 * @param repo repository
+	 * @return statistics of the repository
+	 */
+	public RepositoryStats addRepository(String name, Repository repo) {
+		repos.put(name.toLowerCase(), repo);
+		return stats.computeIfAbsent(name.toLowerCase(), k -> new RepositoryStats());
+	}
+	
+	/**
+	 * Get names of the repositories
+	 * 
+	 * @return set of names
+	 */
+	public Set<String> getNames() {
+		return repos.keySet();
+	}
+	
+	/**
+	 * Recount the statistics of a repository
+	 * 
+	 * @param name repository name
+	 * @throws RepositoryException
+	 */
+	public synchronized void recount(String name) throws RepositoryException {
+		Repository repo = repos.get(name);
+		if (repo == null) {
+			throw new RepositoryException("Unknown repository " + name);
+		}
+		long start = System.currentTimeMillis();
+		try (RepositoryConnection conn = repo.getConnection()) {
+			conn.export(stats.get(name).recount());
+		} finally {
+			LOG.info("Recount of {} took {} ms", name, System.currentTimeMillis() - start);
+		}
+	}
+	
+	/**
+	 * Recount repository, logging errors instead of throwing them
+	 * 
+	 * @param name repository name
+	 */
+	private void recountQuietly(String name) {
+		try {
+			recount(name);
+		} catch (RepositoryUnavailableException e) {
+			LOG.info("Repository {} not available yet, recount postponed", name);
+			exec.schedule(() -> recountQuietly(name), 1, TimeUnit.MINUTES);
+		} catch (RepositoryException|RDFHandlerException e) {
+			LOG.error("Recount of {} failed", name, e);
+		}
+	}
+	
+	@Override
+	public void start() throws Exception {
+		exec = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "stats");
+			t.setDaemon(true);
+			return t;
+		});
+		for (String name: repos.keySet()) {
+			exec.scheduleWithFixedDelay(() -> recountQuietly(name), 0, interval, TimeUnit.MINUTES);
+		}
+	}
+
+	@Override
+	public void stop() throws Exception {
+		exec.shutdownNow();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg statistics configuration
+	 */
+	public StatsManager(StatsConfig cfg) {
+		this.interval = cfg.getInterval();
+	}
+}
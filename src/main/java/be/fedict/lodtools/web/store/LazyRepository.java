@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.store;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+
+/**
+ * Placeholder for a repository that is bound later, in the background.
+ * 
+ * Until then, getting a connection fails with a 
+ * {@link RepositoryUnavailableException}.
+ * 
+ * @author Bart.Hanssens
+ */
+public class LazyRepository implements Repository {
+	private final String name;
+	private volatile Repository repo;
+	private volatile boolean missing;
+	
+	/**
+	 * Bind the actual repository
+	 * 
+	 * @param repo repository
+	 */
+	public void bind(Repository repo) {
+		this.repo = repo;
+		this.missing = false;
+	}
+	
+	/**
+	 * Check if the actual repository is bound
+	 * 
+	 * @return true if bound
+	 */
+	public boolean isBound() {
+		return repo != null;
+	}
+	
+	/**
+	 * Mark the repository as not found in the store (yet), 
+	 * until it is bound
+	 */
+	public void markMissing() {
+		this.missing = true;
+	}
+	
+	/**
+	 * Check if the repository was not found in the store
+	 * 
+	 * @return true if not found
+	 */
+	public boolean isMissing() {
+		return missing;
+	}
+	
+	/**
+	 * Get name of the repository
+	 * 
+	 * @return name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Get actual repository, or throw exception when not available
+	 * 
+	 * @return repository
+	 * @throws RepositoryUnavailableException 
+	 */
+	private Repository get() throws RepositoryUnavailableException {
+		Repository r = repo;
+		if (r == null) {
+			throw new RepositoryUnavailableException(name);
+		}
+		return r;
+	}
+	
+	@Override
+	public RepositoryConnection getConnection() throws RepositoryException {
+		return get().getConnection();
+	}
+	
+	@Override
+	public ValueFactory getValueFactory() {
+		// remote repositories use the simple value factory anyway
+		Repository r = repo;
+		return (r != null) ? r.getValueFactory() : SimpleValueFactory.getInstance();
+	}
+	
+	@Override
+	public void initialize() throws RepositoryException {
+		// initialized when bound
+	}
+
+	@Override
+	public void shutDown() throws RepositoryException {
+		Repository r = repo;
+		if (r != null) {
+			r.shutDown();
+		}
+	}
+
+	@Override
+	public boolean isInitialized() {
+		Repository r = repo;
+		return (r != null) && r.isInitialized();
+	}
+
+	@Override
+	public boolean isWritable() throws RepositoryException {
+		return get().isWritable();
+	}
+	
+	@Override
+	public File getDataDir() {
+		Repository r = repo;
+		return (r != null) ? r.getDataDir() : null;
+	}
+	
+	/**
+	 * Set the data directory of the actual repository.
+	 * Does nothing when not bound, since the data directory of a remote or
+	 * managed repository is set by the repository manager.
+	 * 
+	 * @param dir data directory
+	 */
+	@Override
+	public void setDataDir(File dir) {
+		Repository r = repo;
+		if (r != null) {
+			r.setDataDir(dir);
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param name repository name 
+	 */
+	public LazyRepository(String name) {
+		this.name = name;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.store;
+
+import be.fedict.lodtools.web.helpers.ArrayModel;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.rdf4j.RDF4JException;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+
+/**
+ * Finds which statements of an update are not yet in the store, 
+ * so store listeners are only notified of actual additions.
+ * 
+ * The statements of all subjects in the update are fetched with one query 
+ * (per block of subjects) at the start of the transaction, instead of checking
+ * each statement. Statements are compared without their context.
+ * 
+ * @author Bart.Hanssens
+ */
+public class NewStatements {
+	private final static String Q_EXISTING = 
+			"SELECT ?s ?p ?o WHERE { VALUES ?s { %s } ?s ?p ?o }";
+	private final static Pattern IRI_UNSAFE = Pattern.compile("[\\s<>\"{}|^`\\\\]");
+	// subjects per query
+	private final static int BLOCK = 1000;
+	
+	// subject -> predicate and object of statements in the store
+	private final Map<Value,Set<List<Value>>> present = new HashMap<>();
+	
+	/**
+	 * Mark statement as present
+	 * 
+	 * @param s subject
+	 * @param p predicate
+	 * @param o object
+	 * @return false if already present
+	 */
+	private boolean add(Value s, Value p, Value o) {
+		return present.computeIfAbsent(s, k -> new HashSet<>()).add(Arrays.asList(p, o));
+	}
+	
+	/**
+	 * Fetch the statements of a block of subjects
+	 * 
+	 * @param conn repository connection
+	 * @param values IRIs, enclosed in angle brackets
+	 * @throws RDF4JException
+	 */
+	private void fetch(RepositoryConnection conn, String values) throws RDF4JException {
+		String qry = String.format(Q_EXISTING, values);
+		try (TupleQueryResult res = conn.prepareTupleQuery(QueryLanguage.SPARQL, qry).evaluate()) {
+			while (res.hasNext()) {
+				BindingSet bs = res.next();
+				add(bs.getValue("s"), bs.getValue("p"), bs.getValue("o"));
+			}
+		}
+	}
+	
+	/**
+	 * Get statements not yet in the store, and consider them present from now on
+	 * 
+	 * @param m statements to be added
+	 * @return new statements
+	 */
+	public Model filter(Model m) {
+		Model added = new ArrayModel(m.getNamespaces(), m.size());
+		for (Statement st: m) {
+			if (add(st.getSubject(), st.getPredicate(), st.getObject())) {
+				added.add(st);
+			}
+		}
+		return added;
+	}
+	
+	/**
+	 * Consider the statements of a subject as no longer present
+	 * 
+	 * @param subj subject
+	 */
+	public void removed(Resource subj) {
+		present.remove(subj);
+	}
+	
+	/**
+	 * Fetch the statements in the store of the subjects of one or more updates.
+	 * Should be called in the same transaction as the updates.
+	 * Blank nodes and IRIs that cannot be used in a query are skipped, 
+	 * their statements are considered new.
+	 * 
+	 * @param conn repository connection
+	 * @param models statements to be added
+	 * @return new statements finder
+	 * @throws RDF4JException
+	 */
+	public static NewStatements of(RepositoryConnection conn, Collection<Model> models) 
+															throws RDF4JException {
+		Set<String> subjs = new LinkedHashSet<>();
+		for (Model m: models) {
+			for (Resource subj: m.subjects()) {
+				if (subj instanceof IRI && !IRI_UNSAFE.matcher(subj.stringValue()).find()) {
+					subjs.add(subj.stringValue());
+				}
+			}
+		}
+		NewStatements ns = new NewStatements();
+		StringBuilder values = new StringBuilder();
+		int n = 0;
+		for (String subj: subjs) {
+			values.append('<').append(subj).append("> ");
+			if (++n % BLOCK == 0) {
+				ns.fetch(conn, values.toString());
+				values.setLength(0);
+			}
+		}
+		if (values.length() > 0) {
+			ns.fetch(conn, values.toString());
+		}
+		return ns;
+	}
+}
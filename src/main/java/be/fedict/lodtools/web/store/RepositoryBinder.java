@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.store;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.eclipse.rdf4j.RDF4JException;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.manager.RepositoryManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Initializes the repository manager and binds the repositories in the
+ * background, in parallel, retrying with an increasing delay until the
+ * store can be reached.
+ * A repository the store does not know about is reported as missing once the 
+ * maximum delay is reached, and is still checked in the background, 
+ * in case it is created later.
+ * 
+ * @author Bart.Hanssens
+ */
+public class RepositoryBinder implements Managed {
+	private final static Logger LOG = LoggerFactory.getLogger(RepositoryBinder.class);
+	
+	public final static String SYSTEM = "SYSTEM";
+	
+	private final static long MIN_DELAY = 1_000;
+	private final static long MAX_DELAY = 60_000;
+	
+	private final RepositoryManager mgr;
+	private final Map<String,LazyRepository> repos = new ConcurrentHashMap<>();
+	private ExecutorService exec;
+	
+	/**
+	 * Get a repository, to be bound later
+	 * 
+	 * @param name repository name, or SYSTEM for the system repository
+	 * @return lazy repository
+	 */
+	public LazyRepository getRepository(String name) {
+		return repos.computeIfAbsent(name, LazyRepository::new);
+	}
+	
+	/**
+	 * Get names of the repositories that are not bound yet, 
+	 * excluding the ones that were not found
+	 * 
+	 * @return list of names
+	 */
+	public List<String> getUnbound() {
+		return repos.values().stream().filter(r -> !r.isBound() && !r.isMissing())
+						.map(LazyRepository::getName).sorted().collect(Collectors.toList());
+	}
+	
+	/**
+	 * Get names of the repositories that were not found in the store
+	 * 
+	 * @return list of names
+	 */
+	public List<String> getMissing() {
+		return repos.values().stream().filter(LazyRepository::isMissing)
+						.map(LazyRepository::getName).sorted().collect(Collectors.toList());
+	}
+	
+	/**
+	 * Initialize repository manager, if needed
+	 */
+	private synchronized void initialize() {
+		if (! mgr.isInitialized()) {
+			mgr.initialize();
+		}
+	}
+	
+	/**
+	 * Keep trying to bind a repository
+	 * 
+	 * @param lazy lazy repository
+	 */
+	private void bind(LazyRepository lazy) {
+		String name = lazy.getName();
+		long delay = MIN_DELAY;
+		
+		while (! Thread.currentThread().isInterrupted()) {
+			try {
+				initialize();
+				Repository repo = name.equals(SYSTEM) ? mgr.getSystemRepository() 
+														: mgr.getRepository(name);
+				if (repo != null) {
+					lazy.bind(repo);
+					LOG.info("Repository {} bound", name);
+					return;
+				}
+				if (delay < MAX_DELAY) {
+					LOG.warn("Repository {} not found, retrying in {} ms", name, delay);
+				} else if (! lazy.isMissing()) {
+					lazy.markMissing();
+					LOG.error("Repository {} not found, checking every {} ms", name, delay);
+				} else {
+					LOG.debug("Repository {} still not found", name);
+				}
+			} catch (RDF4JException e) {
+				LOG.warn("Repository {} not available, retrying in {} ms: {}", 
+							name, delay, e.getMessage());
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			delay = Math.min(delay * 2, MAX_DELAY);
+		}
+	}
+	
+	@Override
+	public void start() throws Exception {
+		exec = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "repository-binder");
+			t.setDaemon(true);
+			return t;
+		});
+		repos.values().forEach(r -> exec.execute(() -> bind(r)));
+		exec.shutdown();
+	}
+
+	@Override
+	public void stop() throws Exception {
+		exec.shutdownNow();
+		exec.awaitTermination(5, TimeUnit.SECONDS);
+		if (mgr.isInitialized()) {
+			mgr.shutDown();
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param mgr repository manager, not yet initialized
+	 */
+	public RepositoryBinder(RepositoryManager mgr) {
+		this.mgr = mgr;
+	}
+}
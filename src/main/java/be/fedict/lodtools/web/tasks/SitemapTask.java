@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.tasks;
+
+import be.fedict.lodtools.web.sitemap.SitemapManager;
+
+import com.google.common.collect.ImmutableMultimap;
+
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+/**
+ * Admin task rebuilding the sitemaps of one or all repositories right away.
+ * 
+ * Usage: POST /tasks/sitemap?repo=cbe
+ * 
+ * @author Bart.Hanssens
+ */
+public class SitemapTask extends Task {
+	private final SitemapManager sitemaps;
+	
+	@Override
+	public void execute(ImmutableMultimap<String, String> params, PrintWriter out) throws Exception {
+		Collection<String> names = params.containsKey("repo") 
+									? params.get("repo").asList() : sitemaps.getNames();
+		for (String name: names) {
+			long start = System.currentTimeMillis();
+			sitemaps.rebuild(name.toLowerCase());
+			out.printf("%s rebuilt in %d ms\n", name, System.currentTimeMillis() - start);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param sitemaps sitemap manager
+	 */
+	public SitemapTask(SitemapManager sitemaps) {
+		super("sitemap");
+		this.sitemaps = sitemaps;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.tasks;
+
+import be.fedict.lodtools.web.monitoring.SlowQueryLog;
+
+import com.google.common.collect.ImmutableMultimap;
+
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Admin task listing the slowest and most frequent slow queries.
+ * 
+ * Usage: POST /tasks/slow-queries?top=10
+ * 
+ * @author Bart.Hanssens
+ */
+public class SlowQueryTask extends Task {
+	private final static int TOP = 10;
+	
+	private final SlowQueryLog log;
+	
+	@Override
+	public void execute(ImmutableMultimap<String, String> params, PrintWriter out) throws Exception {
+		int n = TOP;
+		if (params.containsKey("top")) {
+			n = Integer.parseInt(params.get("top").asList().get(0));
+		}
+		
+		out.printf("Slow queries (>= %d ms)\n\n", log.getThreshold());
+		
+		out.printf("Top %d slowest since startup:\n", n);
+		for (SlowQueryLog.Entry e: log.getSlowest(n)) {
+			out.println(e);
+		}
+		
+		out.printf("\nTop %d most frequent since startup:\n", n);
+		for (Map.Entry<String,Long> e: log.getMostFrequent(n)) {
+			out.printf("%6d %s\n", e.getValue(), e.getKey());
+		}
+		
+		out.println("\nMost recent:");
+		log.getRecent().stream().limit(n).forEach(out::println);
+		out.flush();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param log slow query log
+	 */
+	public SlowQueryTask(SlowQueryLog log) {
+		super("slow-queries");
+		this.log = log;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.throttle;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Request rate limit for one class of endpoints
+ * 
+ * @author Bart.Hanssens
+ */
+public class LimitConfig {
+	@Min(0)
+	private double rate;
+	@Min(1)
+	private int burst;
+
+	/**
+	 * Get the sustained number of requests per second, 0 for no limit
+	 * 
+	 * @return requests per second
+	 */
+	@JsonProperty
+	public double getRate() {
+		return rate;
+	}
+
+	@JsonProperty
+	public void setRate(double rate) {
+		this.rate = rate;
+	}
+
+	/**
+	 * Get the number of requests allowed in a burst
+	 * 
+	 * @return number of requests
+	 */
+	@JsonProperty
+	public int getBurst() {
+		return burst;
+	}
+
+	@JsonProperty
+	public void setBurst(int burst) {
+		this.burst = burst;
+	}
+	
+	public LimitConfig() {
+		this(0, 1);
+	}
+	
+	public LimitConfig(double rate, int burst) {
+		this.rate = rate;
+		this.burst = burst;
+	}
+}
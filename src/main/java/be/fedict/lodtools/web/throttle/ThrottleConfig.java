@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.throttle;
+
+import be.fedict.lodtools.web.resources.EndpointClass;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration of the per-client request rate limits
+ * 
+ * @author Bart.Hanssens
+ */
+public class ThrottleConfig {
+	@Valid @NotNull
+	private LimitConfig lookup = new LimitConfig(50, 100);
+	@Valid @NotNull
+	private LimitConfig search = new LimitConfig(5, 10);
+	@Valid @NotNull
+	private LimitConfig filter = new LimitConfig(1, 5);
+	@Valid @NotNull
+	private LimitConfig bulk = new LimitConfig(2, 5);
+	
+	@Min(1)
+	private int maxClients = 100000;
+
+	@JsonProperty
+	public LimitConfig getLookup() {
+		return lookup;
+	}
+
+	@JsonProperty
+	public void setLookup(LimitConfig lookup) {
+		this.lookup = lookup;
+	}
+
+	@JsonProperty
+	public LimitConfig getSearch() {
+		return search;
+	}
+
+	@JsonProperty
+	public void setSearch(LimitConfig search) {
+		this.search = search;
+	}
+
+	@JsonProperty
+	public LimitConfig getFilter() {
+		return filter;
+	}
+
+	@JsonProperty
+	public void setFilter(LimitConfig filter) {
+		this.filter = filter;
+	}
+
+	@JsonProperty
+	public LimitConfig getBulk() {
+		return bulk;
+	}
+
+	@JsonProperty
+	public void setBulk(LimitConfig bulk) {
+		this.bulk = bulk;
+	}
+	
+	/**
+	 * Get the limit for a class of endpoints
+	 * 
+	 * @param cl endpoint class
+	 * @return limit
+	 */
+	public LimitConfig getLimit(EndpointClass cl) {
+		switch(cl) {
+			case SEARCH: return search;
+			case FILTER: return filter;
+			case BULK: return bulk;
+			default: return lookup;
+		}
+	}
+
+	/**
+	 * Get the number of clients tracked before idle ones are removed
+	 * 
+	 * @return number of clients
+	 */
+	@JsonProperty
+	public int getMaxClients() {
+		return maxClients;
+	}
+
+	@JsonProperty
+	public void setMaxClients(int maxClients) {
+		this.maxClients = maxClients;
+	}
+}
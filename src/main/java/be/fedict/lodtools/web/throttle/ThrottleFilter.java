@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.throttle;
+
+import be.fedict.lodtools.web.resources.EndpointClass;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Limit the request rate per client IP address and class of endpoints.
+ * 
+ * Uses the generic cell rate algorithm: for each client and endpoint class, 
+ * only the theoretical arrival time of the next request is stored, and updated
+ * with compare-and-set, so no locks are needed.
+ * Updates (PUT, DELETE, PATCH) are never throttled, since they require
+ * authentication.
+ * 
+ * @author Bart.Hanssens
+ */
+public class ThrottleFilter implements Filter {
+	public final static int TOO_MANY_REQUESTS = 429;
+	
+	private final static int CLASSES = EndpointClass.values().length;
+	private final static int SWEEP = 4096;
+	
+	// nanoseconds between requests, 0 for no limit
+	private final long[] interval = new long[CLASSES];
+	// nanoseconds a client can be ahead of schedule
+	private final long[] tolerance = new long[CLASSES];
+	private final Meter[] throttled = new Meter[CLASSES];
+	
+	private final int maxClients;
+	private final long origin = System.nanoTime();
+	private final ConcurrentMap<String,AtomicLongArray> clients = new ConcurrentHashMap<>();
+	private final AtomicInteger count = new AtomicInteger();
+	
+	/**
+	 * Check if the request method is subject to rate limiting
+	 * 
+	 * @param method HTTP method
+	 * @return true if limited
+	 */
+	private static boolean isLimited(String method) {
+		return method.equals("GET") || method.equals("HEAD") || method.equals("POST");
+	}
+	
+	/**
+	 * Try to reserve a slot for a request
+	 * 
+	 * @param tats theoretical arrival times of a client
+	 * @param cl endpoint class
+	 * @param now current time
+	 * @return 0 if allowed, otherwise nanoseconds to wait
+	 */
+	private long acquire(AtomicLongArray tats, int cl, long now) {
+		while (true) {
+			long tat = tats.get(cl);
+			long next = Math.max(tat, now) + interval[cl];
+			long wait = next - now - tolerance[cl];
+			if (wait > 0) {
+				return wait;
+			}
+			if (tats.compareAndSet(cl, tat, next)) {
+				return 0;
+			}
+		}
+	}
+	
+	/**
+	 * Remove clients that are back at their full burst allowance
+	 * 
+	 * @param now current time
+	 */
+	private void sweep(long now) {
+		clients.values().removeIf(tats -> {
+			for (int i = 0; i < CLASSES; i++) {
+				if (tats.get(i) > now) {
+					return false;
+				}
+			}
+			return true;
+		});
+	}
+	
+	@Override
+	public void init(FilterConfig fc) throws ServletException {
+		// nothing to do
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) 
+									throws IOException, ServletException {
+		if (!(req instanceof HttpServletRequest)) {
+			chain.doFilter(req, res);
+			return;
+		}
+		HttpServletRequest hreq = (HttpServletRequest) req;
+		int cl = EndpointClass.of(hreq.getRequestURI()).ordinal();
+		if (interval[cl] == 0 || !isLimited(hreq.getMethod())) {
+			chain.doFilter(req, res);
+			return;
+		}
+		
+		long now = System.nanoTime() - origin;
+		String client = hreq.getRemoteAddr();
+		// avoid locking on lookup of known clients
+		AtomicLongArray tats = clients.get(client);
+		if (tats == null) {
+			tats = clients.computeIfAbsent(client, k -> new AtomicLongArray(CLASSES));
+			if (count.incrementAndGet() % SWEEP == 0 && clients.size() > maxClients) {
+				sweep(now);
+			}
+		}
+		
+		long wait = acquire(tats, cl, now);
+		if (wait == 0) {
+			chain.doFilter(req, res);
+			return;
+		}
+		throttled[cl].mark();
+		HttpServletResponse resp = (HttpServletResponse) res;
+		resp.setStatus(TOO_MANY_REQUESTS);
+		resp.setHeader("Retry-After", 
+			String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999))));
+		resp.setContentType("text/plain");
+		resp.getWriter().write("Too many requests");
+	}
+
+	@Override
+	public void destroy() {
+		// nothing to do
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg rate limit configuration
+	 * @param metrics metric registry
+	 */
+	public ThrottleFilter(ThrottleConfig cfg, MetricRegistry metrics) {
+		for (EndpointClass cl: EndpointClass.values()) {
+			int i = cl.ordinal();
+			LimitConfig limit = cfg.getLimit(cl);
+			if (limit.getRate() > 0) {
+				interval[i] = (long) (TimeUnit.SECONDS.toNanos(1) / limit.getRate());
+				tolerance[i] = interval[i] * limit.getBurst();
+			}
+			throttled[i] = metrics.meter(MetricRegistry.name(ThrottleFilter.class, 
+										"throttled", cl.name().toLowerCase()));
+		}
+		this.maxClients = cfg.getMaxClients();
+	}
+}
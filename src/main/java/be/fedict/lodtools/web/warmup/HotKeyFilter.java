@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Count successful GET requests per path (including query string), 
+ * to find the most requested ones.
+ * 
+ * Warm-up requests are not counted.
+ * 
+ * @author Bart.Hanssens
+ */
+public class HotKeyFilter implements Filter {
+	public final static String HEADER = "X-Warmup";
+	
+	private final Map<String,LongAdder> counts = new ConcurrentHashMap<>();
+	private final int max;
+	
+	@Override
+	public void init(FilterConfig fc) throws ServletException {
+		// nothing to do
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain) 
+											throws IOException, ServletException {
+		chain.doFilter(req, resp);
+		
+		HttpServletRequest hreq = (HttpServletRequest) req;
+		if (! hreq.getMethod().equals("GET") || hreq.getHeader(HEADER) != null
+				|| ((HttpServletResponse) resp).getStatus() != HttpServletResponse.SC_OK) {
+			return;
+		}
+		String key = hreq.getRequestURI();
+		if (hreq.getQueryString() != null) {
+			key += "?" + hreq.getQueryString();
+		}
+		LongAdder count = counts.get(key);
+		if (count == null) {
+			// limit memory use, keeping paths that were seen first
+			if (counts.size() >= max) {
+				return;
+			}
+			count = counts.computeIfAbsent(key, k -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	@Override
+	public void destroy() {
+		// nothing to do
+	}
+	
+	/**
+	 * Get the most requested paths
+	 * 
+	 * @param n maximum number of paths
+	 * @return list of paths, most requested first
+	 */
+	public List<String> getTop(int n) {
+		return counts.entrySet().stream()
+				.sorted(Comparator.comparingLong(
+							(Map.Entry<String,LongAdder> e) -> e.getValue().sum()).reversed())
+				.limit(n)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Write the most requested paths to a file, one per line
+	 * 
+	 * @param file snapshot file
+	 * @param n maximum number of paths
+	 * @throws IOException 
+	 */
+	public void writeSnapshot(Path file, int n) throws IOException {
+		List<String> top = getTop(n);
+		if (top.isEmpty()) {
+			// keep previous snapshot
+			return;
+		}
+		Path tmp = Paths.get(file + ".tmp");
+		Files.write(tmp, top, StandardCharsets.UTF_8);
+		Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param max maximum number of distinct paths to count
+	 */
+	public HotKeyFilter(int max) {
+		this.max = max;
+	}
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.warmup;
+
+import be.fedict.lodtools.web.throttle.ThrottleFilter;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.lifecycle.ServerLifecycleListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prefetch the most requested paths after startup, by sending requests to 
+ * the application itself. This fills the caches of the triple store and
+ * compiles the hot code paths before regular traffic comes in.
+ * 
+ * The paths are taken from the snapshot written on the previous shutdown, 
+ * or from a Dropwizard request log.
+ * 
+ * @author Bart.Hanssens
+ */
+public class Warmup implements Managed, ServerLifecycleListener {
+	private final static Logger LOG = LoggerFactory.getLogger(Warmup.class);
+	
+	// successful GET requests in the NCSA format used by the request log
+	private final static Pattern LOG_LINE = Pattern.compile("\"GET (\\S+) HTTP/[0-9.]+\" 200 ");
+	private final static int TIMEOUT = 30_000;
+	private final static int RETRIES = 60;
+	private final static int RETRY_DELAY = 5_000;
+	
+	private final HotKeyFilter filter;
+	private final Path snapshot;
+	private final Path requestLog;
+	private final int size;
+	private final int concurrency;
+	
+	private final AtomicInteger done = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private volatile int total = 0;
+	private volatile boolean finished = false;
+	
+	/**
+	 * Get the most requested paths from a request log
+	 * 
+	 * @param log request log, optionally gzipped
+	 * @param n maximum number of paths
+	 * @return list of paths, most requested first
+	 * @throws IOException 
+	 */
+	protected static List<String> fromRequestLog(Path log, int n) throws IOException {
+		Map<String,Integer> counts = new HashMap<>();
+		
+		InputStream in = Files.newInputStream(log);
+		if (log.toString().endsWith(".gz")) {
+			in = new GZIPInputStream(in);
+		}
+		try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				Matcher m = LOG_LINE.matcher(line);
+				if (m.find()) {
+					counts.merge(m.group(1), 1, Integer::sum);
+				}
+			}
+		}
+		return counts.entrySet().stream()
+				.sorted(Comparator.comparing(
+							(Map.Entry<String,Integer> e) -> e.getValue()).reversed())
+				.limit(n)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Get the paths to prefetch
+	 * 
+	 * @return list of paths
+	 * @throws IOException 
+	 */
+	private List<String> getPaths() throws IOException {
+		if (snapshot != null && Files.exists(snapshot)) {
+			return Files.readAllLines(snapshot, StandardCharsets.UTF_8).stream()
+					.filter(l -> l.startsWith("/"))
+					.limit(size)
+					.collect(Collectors.toList());
+		}
+		if (requestLog != null && Files.exists(requestLog)) {
+			return fromRequestLog(requestLog, size);
+		}
+		return Collections.EMPTY_LIST;
+	}
+	
+	/**
+	 * Get base URL of the application connector
+	 * 
+	 * @param server Jetty server
+	 * @return base URL
+	 */
+	private static String getBaseURL(Server server) {
+		ServerConnector app = null;
+		for (Connector c: server.getConnectors()) {
+			if (c instanceof ServerConnector 
+					&& (app == null || "application".equals(c.getName()))) {
+				app = (ServerConnector) c;
+			}
+		}
+		if (app == null) {
+			throw new IllegalStateException("No application connector");
+		}
+		String scheme = (app.getConnectionFactory(SslConnectionFactory.class) != null) 
+							? "https" : "http";
+		String host = (app.getHost() != null) ? app.getHost() : "localhost";
+		return scheme + "://" + host + ":" + app.getLocalPort();
+	}
+	
+	/**
+	 * Request a path and discard the response.
+	 * Requests are retried while the repositories are not available yet,
+	 * or when they are throttled.
+	 * 
+	 * @param url full URL
+	 */
+	private void fetch(String url) {
+		try {
+			for (int i = 0; i < RETRIES; i++) {
+				HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+				conn.setConnectTimeout(TIMEOUT);
+				conn.setReadTimeout(TIMEOUT);
+				conn.setRequestProperty(HotKeyFilter.HEADER, "true");
+				int status = conn.getResponseCode();
+				InputStream in = (status < 400) ? conn.getInputStream() : conn.getErrorStream();
+				if (in != null) {
+					try (InputStream body = in) {
+						byte[] buf = new byte[8192];
+						while (body.read(buf) != -1) {
+							// discard
+						}
+					}
+				}
+				if (status != HttpURLConnection.HTTP_UNAVAILABLE 
+						&& status != ThrottleFilter.TOO_MANY_REQUESTS) {
+					if (status >= 500) {
+						failed.incrementAndGet();
+					}
+					return;
+				}
+				Thread.sleep(RETRY_DELAY);
+			}
+			failed.incrementAndGet();
+		} catch (IOException ioe) {
+			LOG.debug("Warm-up of {} failed", url, ioe);
+			failed.incrementAndGet();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} finally {
+			done.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Prefetch all paths, with a limited number of parallel requests
+	 * 
+	 * @param base base URL
+	 */
+	private void run(String base) {
+		long start = System.currentTimeMillis();
+		try {
+			List<String> paths = getPaths();
+			total = paths.size();
+			LOG.info("Warming up {} paths", total);
+			
+			ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+			paths.forEach(p -> pool.execute(() -> fetch(base + p)));
+			pool.shutdown();
+			pool.awaitTermination(1, TimeUnit.HOURS);
+		} catch (IOException ioe) {
+			LOG.error("Could not read paths for warm-up", ioe);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} finally {
+			finished = true;
+			LOG.info("Warm-up done in {} ms, {} of {} failed", 
+						System.currentTimeMillis() - start, failed.get(), total);
+		}
+	}
+	
+	@Override
+	public void serverStarted(Server server) {
+		String base;
+		try {
+			base = getBaseURL(server);
+		} catch (IllegalStateException ise) {
+			LOG.error("Skipping warm-up", ise);
+			finished = true;
+			return;
+		}
+		Thread t = new Thread(() -> run(base), "warmup");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	@Override
+	public void start() throws Exception {
+		// started when the server is listening
+	}
+	
+	@Override
+	public void stop() throws Exception {
+		if (snapshot != null) {
+			filter.writeSnapshot(snapshot, size);
+		}
+	}
+	
+	/**
+	 * Check if the warm-up is finished
+	 * 
+	 * @return true if finished
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+	
+	/**
+	 * Get number of paths to prefetch
+	 * 
+	 * @return number of paths
+	 */
+	public int getTotal() {
+		return total;
+	}
+	
+	/**
+	 * Get number of prefetched paths
+	 * 
+	 * @return number of paths
+	 */
+	public int getDone() {
+		return done.get();
+	}
+	
+	/**
+	 * Get number of failed requests
+	 * 
+	 * @return number of requests
+	 */
+	public int getFailed() {
+		return failed.get();
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cfg warm-up configuration
+	 * @param filter filter counting the requests
+	 */
+	public Warmup(WarmupConfig cfg, HotKeyFilter filter) {
+		this.filter = filter;
+		this.snapshot = (cfg.getSnapshot() != null) ? Paths.get(cfg.getSnapshot()) : null;
+		this.requestLog = (cfg.getRequestLog() != null) ? Paths.get(cfg.getRequestLog()) : null;
+		this.size = cfg.getSize();
+		this.concurrency = cfg.getConcurrency();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017, Bart Hanssens <bart.hanssens@fedict.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.lodtools.web.warmup;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration of the warm-up after startup
+ * 
+ * @author Bart.Hanssens
+ */
+public class WarmupConfig {
+	private String snapshot;
+	private String requestLog;
+	
+	@Min(1)
+	private int size = 1000;
+	@Min(1)
+	private int concurrency = 4;
+
+	/**
+	 * Get file used to store the most requested paths on shutdown
+	 * 
+	 * @return file name
+	 */
+	@JsonProperty
+	public String getSnapshot() {
+		return snapshot;
+	}
+
+	@JsonProperty
+	public void setSnapshot(String snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Get Dropwizard request log, used when there is no snapshot
+	 * 
+	 * @return file name
+	 */
+	@JsonProperty
+	public String getRequestLog() {
+		return requestLog;
+	}
+
+	@JsonProperty
+	public void setRequestLog(String requestLog) {
+		this.requestLog = requestLog;
+	}
+
+	/**
+	 * Get maximum number of paths to prefetch
+	 * 
+	 * @return number of paths
+	 */
+	@JsonProperty
+	public int getSize() {
+		return size;
+	}
+
+	@JsonProperty
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Get number of parallel warm-up requests
+	 * 
+	 * @return number of requests
+	 */
+	@JsonProperty
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	@JsonProperty
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+}